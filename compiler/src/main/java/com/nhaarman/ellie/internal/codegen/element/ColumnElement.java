@@ -135,6 +135,10 @@ public class ColumnElement {
         return isModel;
     }
 
+    public boolean isPrimitive() {
+        return element.asType().getKind().isPrimitive();
+    }
+
     public String getFieldName() {
         return element.getSimpleName().toString();
     }
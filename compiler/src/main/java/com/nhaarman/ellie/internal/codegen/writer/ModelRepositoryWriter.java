@@ -18,23 +18,30 @@ package com.nhaarman.ellie.internal.codegen.writer;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.google.common.collect.Sets;
+import com.nhaarman.ellie.CacheStats;
 import com.nhaarman.ellie.Ellie;
 import com.nhaarman.ellie.Model;
 import com.nhaarman.ellie.ModelRepository;
+import com.nhaarman.ellie.TypeAdapter;
 import com.nhaarman.ellie.annotation.Table;
 import com.nhaarman.ellie.internal.codegen.Registry;
 import com.nhaarman.ellie.internal.codegen.element.ColumnElement;
-import com.nhaarman.ellie.query.Select;
-import com.nhaarman.ellie.util.LruCache;
+import com.nhaarman.ellie.util.LongCache;
+import com.nhaarman.ellie.util.SizeOf;
 import com.squareup.javawriter.JavaWriter;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -42,7 +49,6 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 
 import static javax.lang.model.element.Modifier.FINAL;
-import static javax.lang.model.element.Modifier.STATIC;
 
 @SuppressWarnings("HardCodedStringLiteral") public class ModelRepositoryWriter implements SourceWriter<TypeElement> {
 
@@ -64,10 +70,41 @@ import static javax.lang.model.element.Modifier.STATIC;
         }
     };
 
+    private static final Map<String, String> BIND_METHOD_MAP = new HashMap<String, String>() {
+        {
+            put(byte[].class.getName(), "bindBlob");
+            put(Byte[].class.getName(), "bindBlob");
+            put(double.class.getName(), "bindDouble");
+            put(Double.class.getName(), "bindDouble");
+            put(float.class.getName(), "bindDouble");
+            put(Float.class.getName(), "bindDouble");
+            put(int.class.getName(), "bindLong");
+            put(Integer.class.getName(), "bindLong");
+            put(long.class.getName(), "bindLong");
+            put(Long.class.getName(), "bindLong");
+            put(short.class.getName(), "bindLong");
+            put(Short.class.getName(), "bindLong");
+            put(String.class.getName(), "bindString");
+        }
+    };
+
+    private static final Map<String, Integer> PRIMITIVE_SIZE_MAP = new HashMap<String, Integer>() {
+        {
+            put(Boolean.class.getName(), 1);
+            put(Byte.class.getName(), 1);
+            put(Character.class.getName(), 2);
+            put(Double.class.getName(), 8);
+            put(Float.class.getName(), 4);
+            put(Integer.class.getName(), 4);
+            put(Long.class.getName(), 8);
+            put(Short.class.getName(), 2);
+        }
+    };
+
     private static final EnumSet<Modifier> PRIVATE = EnumSet.of(Modifier.PRIVATE, FINAL);
+    private static final EnumSet<Modifier> PRIVATE_STATIC = EnumSet.of(Modifier.PRIVATE, Modifier.STATIC, FINAL);
     private static final EnumSet<Modifier> PUBLIC = EnumSet.of(Modifier.PUBLIC, FINAL);
     private static final EnumSet<Modifier> PUBLIC_FINAL = EnumSet.of(Modifier.PUBLIC, FINAL);
-    private static final EnumSet<Modifier> PRIVATE_STATIC = EnumSet.of(Modifier.PRIVATE, STATIC);
 
     private final Registry mRegistry;
 
@@ -87,6 +124,8 @@ import static javax.lang.model.element.Modifier.STATIC;
         final String modelQualifiedName = element.getQualifiedName().toString();
         final String tableName = element.getAnnotation(Table.class).value();
         final Set<ColumnElement> columns = mRegistry.getColumnElements(element);
+        final Map<String, String> typeAdapterNames = createTypeNames(columns, false);
+        final Map<String, String> repositoryNames = createTypeNames(columns, true);
 
         JavaWriter javaWriter = new JavaWriter(writer);
         javaWriter.setCompressingTypes(true);
@@ -99,20 +138,35 @@ import static javax.lang.model.element.Modifier.STATIC;
 
         writeBeginType(javaWriter, classSimpleName, modelSimpleName, modelQualifiedName);
 
-        writeFields(javaWriter, modelSimpleName);
-        writeConstructor(javaWriter);
+        writeConstants(javaWriter, tableName, columns);
+        writeFields(javaWriter, modelSimpleName, columns, typeAdapterNames, repositoryNames);
+        writeConstructor(javaWriter, columns, typeAdapterNames);
+        writeNewInstance(javaWriter, modelSimpleName);
         writeFind(javaWriter, modelSimpleName);
-        writeCreate(javaWriter, modelSimpleName, tableName);
-        writeUpdate(javaWriter, modelSimpleName, tableName);
-        writeLoad(javaWriter, modelQualifiedName, columns);
+        writeFindAll(javaWriter, modelSimpleName);
+        writeCreate(javaWriter, modelSimpleName);
+        writeUpdate(javaWriter, modelSimpleName, columns);
+        writeGetColumnIndices(javaWriter, columns);
+        writeLoad(javaWriter, modelQualifiedName);
+        writeLoadWithColumnIndices(javaWriter, modelQualifiedName, columns, typeAdapterNames, repositoryNames);
         writeCreateOrUpdate(javaWriter, modelSimpleName);
-        writeDelete(javaWriter, modelSimpleName, tableName);
+        writeDelete(javaWriter, modelSimpleName);
+        writeSaveAll(javaWriter, modelSimpleName, columns);
         writePutEntity(javaWriter, modelSimpleName);
         writeGetEntity(javaWriter, modelSimpleName);
         writeRemoveEntity(javaWriter, modelSimpleName);
+        writeRemoveEntityById(javaWriter);
+        writeRemoveAllEntities(javaWriter);
         writeGetOrFindEntity(javaWriter, modelSimpleName);
-        writeCreateContentValues(javaWriter, modelQualifiedName, columns);
-        writeGetEntityIdentifier(javaWriter, modelSimpleName);
+        writeGetOrFindAll(javaWriter, modelSimpleName);
+        writePrefetchEntities(javaWriter, modelSimpleName);
+        writePrefetchReferences(javaWriter, columns, repositoryNames);
+        writeSizeOf(javaWriter, modelSimpleName, columns);
+        writeGetCacheStats(javaWriter, modelSimpleName);
+        writeCreateContentValues(javaWriter, modelQualifiedName, columns, typeAdapterNames);
+        writeBindValues(javaWriter, modelQualifiedName, columns, typeAdapterNames);
+        writeGetStatements(javaWriter, tableName, columns);
+        writeGetRepositories(javaWriter, repositoryNames);
 
         javaWriter.endType();
     }
@@ -122,13 +176,19 @@ import static javax.lang.model.element.Modifier.STATIC;
 
         Set<String> imports = Sets.newHashSet(
                 modelQualifiedName,
+                CacheStats.class.getName(),
                 Ellie.class.getName(),
                 ContentValues.class.getName(),
                 Cursor.class.getName(),
+                SQLException.class.getName(),
                 SQLiteDatabase.class.getName(),
+                SQLiteStatement.class.getName(),
                 ModelRepository.class.getName(),
-                Select.class.getName(),
-                LruCache.class.getName()
+                TypeAdapter.class.getName(),
+                LongCache.class.getName(),
+                SizeOf.class.getName(),
+                Collection.class.getName(),
+                List.class.getName()
         );
 
         for (ColumnElement column : columns) {
@@ -158,24 +218,102 @@ import static javax.lang.model.element.Modifier.STATIC;
         javaWriter.emitEmptyLine();
     }
 
-    private void writeFields(final JavaWriter javaWriter, final String modelSimpleName) throws IOException {
+    /**
+     * Creates unique names for the type adapters or referenced repositories of given columns,
+     * keyed by the qualified name of the deserialized type.
+     */
+    private Map<String, String> createTypeNames(final Set<ColumnElement> columns, final boolean models) {
+        Map<String, String> names = new LinkedHashMap<>();
+        for (ColumnElement column : columns) {
+            boolean include = models ? column.isModel() : !column.isModel() && column.requiresTypeAdapter();
+            if (!include || names.containsKey(column.getDeserializedQualifiedName())) {
+                continue;
+            }
+
+            String name = column.getDeserializedSimpleName();
+            for (int i = 2; names.containsValue(name); i++) {
+                name = column.getDeserializedSimpleName() + i;
+            }
+            names.put(column.getDeserializedQualifiedName(), name);
+        }
+        return names;
+    }
+
+    /**
+     * Writes the point lookup query used by find(long). It selects the columns explicitly,
+     * so their indices are known up front; its constant text lets SQLite reuse the prepared statement.
+     */
+    private void writeConstants(final JavaWriter javaWriter, final String tableName, final Set<ColumnElement> columns) throws IOException {
+        StringBuilder columnNames = new StringBuilder();
+        StringBuilder columnIndices = new StringBuilder();
+        int index = 0;
+        for (ColumnElement column : columns) {
+            if (index > 0) {
+                columnNames.append(", ");
+                columnIndices.append(", ");
+            }
+            columnNames.append(column.getColumnName());
+            columnIndices.append(index++);
+        }
+
+        javaWriter.emitField(
+                "String", "FIND_SQL", PRIVATE_STATIC,
+                "\"SELECT " + columnNames + " FROM " + tableName + " WHERE " + Model.COLUMN_ID + "=?\""
+        );
+        javaWriter.emitField("int[]", "FIND_COLUMN_INDICES", PRIVATE_STATIC, "{" + columnIndices + "}");
+        javaWriter.emitEmptyLine();
+    }
+
+    private void writeFields(final JavaWriter javaWriter, final String modelSimpleName, final Set<ColumnElement> columns,
+                             final Map<String, String> typeAdapterNames, final Map<String, String> repositoryNames) throws IOException {
         javaWriter.emitField(Ellie.class.getSimpleName(), "mEllie", PRIVATE);
         javaWriter.emitField(SQLiteDatabase.class.getSimpleName(), "mDatabase", PRIVATE);
         javaWriter.emitField(
                 String.format(
-                        "%s<%s, %s>",
-                        LruCache.class.getSimpleName(),
-                        String.class.getSimpleName(),
+                        "%s<%s>",
+                        LongCache.class.getSimpleName(),
                         modelSimpleName
                 ),
                 "mCache",
                 PRIVATE
         );
 
+        Set<String> typeAdapters = Sets.newHashSet();
+        for (ColumnElement column : columns) {
+            String name = typeAdapterNames.get(column.getDeserializedQualifiedName());
+            if (name != null && typeAdapters.add(column.getDeserializedQualifiedName())) {
+                javaWriter.emitField(
+                        String.format("%s<%s, %s>", TypeAdapter.class.getSimpleName(), column.getDeserializedQualifiedName(), column.getSerializedQualifiedName()),
+                        "m" + name + "TypeAdapter",
+                        PRIVATE
+                );
+            }
+        }
+
+        /*
+         * The statements are shared by all threads. Their bind arguments are not thread safe, so they are guarded by
+         * mStatementLock, which is only taken while holding the writable connection through Ellie#beginWrite or a transaction:
+         * a thread holding the lock never waits for a thread holding the connection.
+         */
+        javaWriter.emitField(Object.class.getSimpleName(), "mStatementLock", PRIVATE, "new Object()");
+        javaWriter.emitField(SQLiteStatement.class.getSimpleName(), "mInsertStatement", EnumSet.of(Modifier.PRIVATE));
+        javaWriter.emitField(SQLiteStatement.class.getSimpleName(), "mUpdateStatement", EnumSet.of(Modifier.PRIVATE));
+        javaWriter.emitField(SQLiteStatement.class.getSimpleName(), "mDeleteStatement", EnumSet.of(Modifier.PRIVATE));
+
+        /* Referenced repositories may not exist yet while this repository is created, so they are resolved on first use. */
+        for (Map.Entry<String, String> entry : repositoryNames.entrySet()) {
+            javaWriter.emitField(
+                    String.format("%s<%s>", ModelRepository.class.getSimpleName(), entry.getKey()),
+                    "m" + entry.getValue() + "Repository",
+                    EnumSet.of(Modifier.PRIVATE)
+            );
+        }
+
         javaWriter.emitEmptyLine();
     }
 
-    private void writeConstructor(final JavaWriter javaWriter) throws IOException {
+    private void writeConstructor(final JavaWriter javaWriter, final Set<ColumnElement> columns, final Map<String, String> typeAdapterNames)
+            throws IOException {
         javaWriter.beginConstructor(
                 EnumSet.of(Modifier.PUBLIC),
                 "final " + Ellie.class.getSimpleName(), "ellie",
@@ -185,68 +323,167 @@ import static javax.lang.model.element.Modifier.STATIC;
 
         javaWriter.emitStatement("mEllie = ellie");
         javaWriter.emitStatement("mDatabase = database");
-        javaWriter.emitStatement("mCache = new LruCache<>(cacheSize)");
+        javaWriter.emitStatement("mCache = ellie.createEntityCache(this, cacheSize)");
+
+        for (Map.Entry<String, String> entry : typeAdapterNames.entrySet()) {
+            javaWriter.emitStatement("m%sTypeAdapter = ellie.getTypeAdapter(%s.class)", entry.getValue(), javaWriter.compressType(entry.getKey()));
+        }
 
         javaWriter.endConstructor();
         javaWriter.emitEmptyLine();
     }
 
+    private void writeNewInstance(final JavaWriter javaWriter, final String modelSimpleName) throws IOException {
+        javaWriter.emitAnnotation(Override.class);
+        javaWriter.beginMethod(modelSimpleName, "newInstance", PUBLIC);
+
+        javaWriter.emitStatement("return new %s()", modelSimpleName);
+
+        javaWriter.endMethod();
+        javaWriter.emitEmptyLine();
+    }
+
     private void writeFind(final JavaWriter javaWriter, final String modelSimpleName) throws IOException {
         javaWriter.emitAnnotation(Override.class);
         javaWriter.beginMethod(modelSimpleName, "find", PUBLIC, "final long", " id");
 
-        javaWriter.emitStatement("return new Select().from(%s.class).where(\"%s=?\", id).fetchSingle()", modelSimpleName, Model.COLUMN_ID);
+        javaWriter.emitStatement("Cursor cursor = mEllie.queryById(FIND_SQL, id)");
+        javaWriter.beginControlFlow("try");
+        javaWriter.beginControlFlow("if (!cursor.moveToFirst())");
+        javaWriter.emitStatement("return null");
+        javaWriter.endControlFlow();
+        javaWriter.emitEmptyLine();
+        javaWriter.emitStatement("%s entity = getEntity(id)", modelSimpleName);
+        javaWriter.beginControlFlow("if (entity == null)");
+        javaWriter.emitStatement("entity = newInstance()");
+        javaWriter.endControlFlow();
+        javaWriter.emitStatement("load(entity, cursor, FIND_COLUMN_INDICES)");
+        javaWriter.emitStatement("putEntity(entity)");
+        javaWriter.emitStatement("return entity");
+        javaWriter.nextControlFlow("finally");
+        javaWriter.emitStatement("cursor.close()");
+        javaWriter.endControlFlow();
 
         javaWriter.endMethod();
         javaWriter.emitEmptyLine();
     }
 
-    private void writeCreate(final JavaWriter javaWriter, final String modelSimpleName, final String tableName) throws IOException {
+    private void writeFindAll(final JavaWriter writer, final String modelSimpleName) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod("List<" + modelSimpleName + ">", "findAll", PUBLIC, "final long...", "ids");
+
+        writer.emitStatement("return mEllie.findAll(this, %s.class, ids, false)", modelSimpleName);
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeCreate(final JavaWriter javaWriter, final String modelSimpleName) throws IOException {
         javaWriter.emitAnnotation(Override.class);
         javaWriter.beginMethod(Long.class.getSimpleName(), "create", PUBLIC, "final " + modelSimpleName, " entity");
 
-        javaWriter.emitStatement("ContentValues values = createContentValues(entity)");
-        javaWriter.emitStatement("entity.setId(mDatabase.insert(\"%s\", null, values))", tableName);
-        javaWriter.emitStatement("return entity.getId()");
+        javaWriter.emitStatement("long id");
+        javaWriter.emitStatement("boolean transaction = mEllie.beginWrite(%s.class)", modelSimpleName);
+        javaWriter.beginControlFlow("try");
+        javaWriter.beginControlFlow("synchronized (mStatementLock)");
+        javaWriter.emitStatement("SQLiteStatement statement = getInsertStatement()");
+        javaWriter.emitStatement("bindValues(statement, entity)");
+        javaWriter.emitStatement("id = statement.executeInsert()");
+        javaWriter.endControlFlow();
+        /* Like SQLiteDatabase.insert, report failure as -1. */
+        javaWriter.nextControlFlow("catch (SQLException e)");
+        javaWriter.emitStatement("id = -1L");
+        javaWriter.nextControlFlow("finally");
+        javaWriter.emitStatement("mEllie.endWrite(transaction)");
+        javaWriter.endControlFlow();
+        javaWriter.emitEmptyLine();
+        javaWriter.emitStatement("entity.setId(id)");
+        javaWriter.beginControlFlow("if (id != -1L)");
+        javaWriter.emitStatement("mEllie.notifyChange(%s.class, id)", modelSimpleName);
+        javaWriter.endControlFlow();
+        javaWriter.emitStatement("return id");
 
         javaWriter.endMethod();
         javaWriter.emitEmptyLine();
     }
 
-    private void writeUpdate(final JavaWriter javaWriter, final String modelSimpleName, final String tableName) throws IOException {
+    private void writeUpdate(final JavaWriter javaWriter, final String modelSimpleName, final Set<ColumnElement> columns) throws IOException {
         javaWriter.emitAnnotation(Override.class);
         javaWriter.beginMethod(Long.class.getSimpleName(), "update", PUBLIC, "final " + modelSimpleName, " entity");
 
-        javaWriter.emitStatement("ContentValues values = createContentValues(entity)");
-        javaWriter.emitStatement("mDatabase.update(\"%s\", values, Model.COLUMN_ID + \"=?\", new String[]{entity.getId().toString()})", tableName);
+        javaWriter.emitStatement("boolean transaction = mEllie.beginWrite(%s.class)", modelSimpleName);
+        javaWriter.beginControlFlow("try");
+        javaWriter.beginControlFlow("synchronized (mStatementLock)");
+        javaWriter.emitStatement("SQLiteStatement statement = getUpdateStatement()");
+        javaWriter.emitStatement("bindValues(statement, entity)");
+        javaWriter.emitStatement("statement.bindLong(%d, entity.getId())", columns.size() + 1);
+        javaWriter.emitStatement("statement.executeUpdateDelete()");
+        javaWriter.endControlFlow();
+        javaWriter.nextControlFlow("finally");
+        javaWriter.emitStatement("mEllie.endWrite(transaction)");
+        javaWriter.endControlFlow();
+        javaWriter.emitStatement("mEllie.notifyChange(%s.class, entity.getId())", modelSimpleName);
         javaWriter.emitStatement("return entity.getId()");
 
         javaWriter.endMethod();
         javaWriter.emitEmptyLine();
     }
 
-    private void writeLoad(final JavaWriter writer, final String modelQualifiedName, final Set<ColumnElement> columns) throws IOException {
+    private void writeGetColumnIndices(final JavaWriter writer, final Set<ColumnElement> columns) throws IOException {
         writer.emitAnnotation(Override.class);
-        writer.beginMethod(void.class.getSimpleName(), "load", EnumSet.of(Modifier.PUBLIC, FINAL), "final " + modelQualifiedName, "entity", "final Cursor", "cursor");
+        writer.beginMethod("int[]", "getColumnIndices", PUBLIC, "final Cursor", "cursor");
 
+        final StringBuilder indices = new StringBuilder();
+        for (ColumnElement column : columns) {
+            if (indices.length() > 0) {
+                indices.append(", ");
+            }
+            indices.append("cursor.getColumnIndex(\"").append(column.getColumnName()).append("\")");
+        }
+
+        writer.emitStatement("return new int[]{%s}", indices.toString());
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeLoad(final JavaWriter writer, final String modelQualifiedName) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(void.class.getSimpleName(), "load", PUBLIC, "final " + modelQualifiedName, "entity", "final Cursor", "cursor");
+
+        writer.emitStatement("load(entity, cursor, getColumnIndices(cursor))");
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeLoadWithColumnIndices(final JavaWriter writer, final String modelQualifiedName, final Set<ColumnElement> columns,
+                                            final Map<String, String> typeAdapterNames, final Map<String, String> repositoryNames) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(
+                void.class.getSimpleName(), "load", PUBLIC,
+                "final " + modelQualifiedName, "entity", "final Cursor", "cursor", "final int[]", "columnIndices"
+        );
+
+        int index = 0;
         for (ColumnElement column : columns) {
             final StringBuilder value = new StringBuilder();
 
             int closeParens = 1;
             if (column.isModel()) {
                 closeParens++;
-                value.append("mEllie.getModelRepository(")
-                     .append(column.getDeserializedQualifiedName())
-                     .append(".class).getOrFindEntity(");
+                value.append("get")
+                     .append(repositoryNames.get(column.getDeserializedQualifiedName()))
+                     .append("Repository().getOrFindEntity(");
             } else if (column.requiresTypeAdapter()) {
                 closeParens++;
-                value.append("mEllie.getTypeAdapter(")
-                     .append(column.getDeserializedSimpleName())
-                     .append(".class).deserialize(");
+                value.append("m")
+                     .append(typeAdapterNames.get(column.getDeserializedQualifiedName()))
+                     .append("TypeAdapter.deserialize(");
             }
 
             value.append("cursor.").append(CURSOR_METHOD_MAP.get(column.getSerializedQualifiedName())).append("(");
-            value.append("cursor.getColumnIndex(\"").append(column.getColumnName()).append("\")");
+            value.append("columnIndices[").append(index++).append("]");
 
             for (int i = 0; i < closeParens; i++) {
                 value.append(")");
@@ -277,11 +514,62 @@ import static javax.lang.model.element.Modifier.STATIC;
         writer.emitEmptyLine();
     }
 
-    private void writeDelete(final JavaWriter writer, final String modelSimpleName, final String tableName) throws IOException {
+    private void writeDelete(final JavaWriter writer, final String modelSimpleName) throws IOException {
         writer.emitAnnotation(Override.class);
         writer.beginMethod(void.class.getSimpleName(), "delete", PUBLIC, "final " + modelSimpleName, "entity");
 
-        writer.emitStatement("mDatabase.delete(\"%s\", \"%s=?\", new String[]{entity.getId().toString()});", tableName, Model.COLUMN_ID);
+        writer.emitStatement("boolean transaction = mEllie.beginWrite(%s.class)", modelSimpleName);
+        writer.beginControlFlow("try");
+        writer.beginControlFlow("synchronized (mStatementLock)");
+        writer.emitStatement("SQLiteStatement statement = getDeleteStatement()");
+        writer.emitStatement("statement.bindLong(1, entity.getId())");
+        writer.emitStatement("statement.executeUpdateDelete()");
+        writer.endControlFlow();
+        writer.nextControlFlow("finally");
+        writer.emitStatement("mEllie.endWrite(transaction)");
+        writer.endControlFlow();
+        writer.emitStatement("mEllie.notifyChange(%s.class, entity.getId())", modelSimpleName);
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeSaveAll(final JavaWriter writer, final String modelSimpleName, final Set<ColumnElement> columns) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(void.class.getSimpleName(), "saveAll", PUBLIC, "final Collection<" + modelSimpleName + ">", "entities");
+
+        /* The ids are only assigned once the transaction has succeeded. */
+        writer.emitStatement("long[] ids = new long[entities.size()]");
+        writer.emitStatement("mEllie.beginTransaction()");
+        writer.beginControlFlow("try");
+        writer.beginControlFlow("synchronized (mStatementLock)");
+        writer.emitStatement("SQLiteStatement insertStatement = getInsertStatement()");
+        writer.emitStatement("SQLiteStatement updateStatement = getUpdateStatement()");
+        writer.emitStatement("int i = 0");
+        writer.beginControlFlow("for (%s entity : entities)", modelSimpleName);
+        writer.beginControlFlow("if (entity.getId() == null)");
+        writer.emitStatement("bindValues(insertStatement, entity)");
+        writer.emitStatement("ids[i] = insertStatement.executeInsert()");
+        writer.nextControlFlow("else");
+        writer.emitStatement("bindValues(updateStatement, entity)");
+        writer.emitStatement("updateStatement.bindLong(%d, entity.getId())", columns.size() + 1);
+        writer.emitStatement("updateStatement.executeUpdateDelete()");
+        writer.emitStatement("ids[i] = entity.getId()");
+        writer.endControlFlow();
+        writer.emitStatement("i++");
+        writer.endControlFlow();
+        writer.endControlFlow();
+        writer.emitStatement("mEllie.setTransactionSuccessful()");
+        writer.nextControlFlow("finally");
+        writer.emitStatement("mEllie.endTransaction()");
+        writer.endControlFlow();
+
+        writer.emitStatement("int i = 0");
+        writer.beginControlFlow("for (%s entity : entities)", modelSimpleName);
+        writer.emitStatement("entity.setId(ids[i++])");
+        writer.emitStatement("putEntity(entity)");
+        writer.endControlFlow();
+        writer.emitStatement("mEllie.notifyChange(%s.class, ids)", modelSimpleName);
 
         writer.endMethod();
         writer.emitEmptyLine();
@@ -292,7 +580,7 @@ import static javax.lang.model.element.Modifier.STATIC;
         writer.beginMethod(void.class.getSimpleName(), "putEntity", PUBLIC, "final " + modelSimpleName, "entity");
 
         writer.beginControlFlow("if (entity.getId() != null)");
-        writer.emitStatement("mCache.put(getEntityIdentifier(entity.getId()), entity)");
+        writer.emitStatement("mEllie.putEntity(this, mCache, entity.getId(), entity)");
         writer.endControlFlow();
 
         writer.endMethod();
@@ -303,7 +591,7 @@ import static javax.lang.model.element.Modifier.STATIC;
         writer.emitAnnotation(Override.class);
         writer.beginMethod(modelSimpleName, "getEntity", PUBLIC, "final long", "id");
 
-        writer.emitStatement("return mCache.get(getEntityIdentifier(id))");
+        writer.emitStatement("return mEllie.getEntity(this, mCache, id)");
 
         writer.endMethod();
         writer.emitEmptyLine();
@@ -314,13 +602,33 @@ import static javax.lang.model.element.Modifier.STATIC;
         writer.beginMethod(void.class.getSimpleName(), "removeEntity", PUBLIC, "final " + modelSimpleName, "entity");
 
         writer.beginControlFlow("if (entity.getId() != null)");
-        writer.emitStatement("mCache.remove(getEntityIdentifier(entity.getId()))");
+        writer.emitStatement("mEllie.removeEntity(this, mCache, entity.getId())");
         writer.endControlFlow();
 
         writer.endMethod();
         writer.emitEmptyLine();
     }
 
+    private void writeRemoveEntityById(final JavaWriter writer) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(void.class.getSimpleName(), "removeEntity", PUBLIC, "final long", "id");
+
+        writer.emitStatement("mEllie.removeEntity(this, mCache, id)");
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeRemoveAllEntities(final JavaWriter writer) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(void.class.getSimpleName(), "removeAllEntities", PUBLIC);
+
+        writer.emitStatement("mEllie.removeAllEntities(this, mCache)");
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
     private void writeGetOrFindEntity(final JavaWriter writer, final String modelSimpleName) throws IOException {
         writer.emitAnnotation(Override.class);
         writer.beginMethod(modelSimpleName, "getOrFindEntity", PUBLIC, "final long", "id");
@@ -337,55 +645,99 @@ import static javax.lang.model.element.Modifier.STATIC;
         writer.emitEmptyLine();
     }
 
-    private void writeGetEntityIdentifier(final JavaWriter writer, final String modelSimpleName) throws IOException {
-        writer.beginMethod(String.class.getSimpleName(), "getEntityIdentifier", PRIVATE_STATIC, "final long", "id");
+    private void writeGetOrFindAll(final JavaWriter writer, final String modelSimpleName) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod("List<" + modelSimpleName + ">", "getOrFindAll", PUBLIC, "final long...", "ids");
 
-        writer.emitStatement("return \"%s@\" + id", modelSimpleName);
+        writer.emitStatement("return mEllie.findAll(this, %s.class, ids, true)", modelSimpleName);
 
         writer.endMethod();
         writer.emitEmptyLine();
     }
 
-    private void writeCreateContentValues(final JavaWriter writer, final String modelQualifiedName, final Set<ColumnElement> columns) throws IOException {
-        writer.beginMethod(ContentValues.class.getSimpleName(), "createContentValues", PUBLIC, "final " + modelQualifiedName, "entity");
-        writer.emitStatement("ContentValues values = new ContentValues()");
+    private void writePrefetchEntities(final JavaWriter writer, final String modelSimpleName) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(void.class.getSimpleName(), "prefetchEntities", PUBLIC, "final long[]", "ids");
+
+        writer.emitStatement("mEllie.prefetchEntities(this, %s.class, ids)", modelSimpleName);
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writePrefetchReferences(final JavaWriter writer, final Set<ColumnElement> columns, final Map<String, String> repositoryNames)
+            throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(void.class.getSimpleName(), "prefetchReferences", PUBLIC, "final Cursor", "cursor", "final int[]", "columnIndices");
+
+        int index = 0;
+        for (ColumnElement column : columns) {
+            if (column.isModel()) {
+                writer.emitStatement(
+                        "mEllie.prefetchReferences(get%sRepository(), cursor, columnIndices[%d])",
+                        repositoryNames.get(column.getDeserializedQualifiedName()),
+                        index
+                );
+            }
+            index++;
+        }
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeSizeOf(final JavaWriter writer, final String modelSimpleName, final Set<ColumnElement> columns) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(int.class.getSimpleName(), "sizeOf", PUBLIC, "final " + modelSimpleName, "entity");
+
+        /* The object header, and the repository reference in Model. */
+        int fixedSize = SizeOf.OBJECT_HEADER + SizeOf.REFERENCE;
 
         final StringBuilder value = new StringBuilder();
         for (ColumnElement column : columns) {
-            value.setLength(0);
-            int closeParens = 0;
+            if (column.isPrimitive()) {
+                fixedSize += PRIMITIVE_SIZE_MAP.get(column.getDeserializedQualifiedName());
+                continue;
+            }
 
-            if (!column.isModel() && column.requiresTypeAdapter()) {
-                closeParens++;
-                value.append("(").append(column.getSerializedSimpleName())
-                     .append(") mEllie.getTypeAdapter(")
-                     .append(column.getDeserializedSimpleName())
-                     .append(".class).serialize(");
+            fixedSize += SizeOf.REFERENCE;
+            if (column.isModel()) {
+                continue;
             }
 
+            value.append(" + SizeOf.object(entity.");
             if (column.getGetter() == null) {
-                value.append("entity.").append(column.getFieldName());
+                value.append(column.getFieldName());
             } else {
-                value.append("entity.").append(column.getGetter());
+                value.append(column.getGetter());
             }
+            value.append(")");
+        }
 
-            if (column.isModel()) {
-                value.append(" != null ? ");
-                value.append("entity.");
-                if (column.getGetter() == null) {
-                    value.append(column.getFieldName());
-                } else {
-                    value.append(column.getGetter());
-                }
-                value.append(".getId()");
-                value.append(" : null");
-            }
+        writer.emitStatement("return %d%s", fixedSize, value.toString());
 
-            for (int i = 0; i < closeParens; i++) {
-                value.append(")");
-            }
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
 
-            writer.emitStatement("values.put(\"" + column.getColumnName() + "\", " + value + ")");
+    private void writeGetCacheStats(final JavaWriter writer, final String modelSimpleName) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(CacheStats.class.getSimpleName(), "getCacheStats", PUBLIC);
+
+        writer.emitStatement("return new CacheStats(%s.class, mCache)", modelSimpleName);
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeCreateContentValues(final JavaWriter writer, final String modelQualifiedName, final Set<ColumnElement> columns,
+                                          final Map<String, String> typeAdapterNames) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(ContentValues.class.getSimpleName(), "createContentValues", PUBLIC, "final " + modelQualifiedName, "entity");
+        writer.emitStatement("ContentValues values = new ContentValues()");
+
+        for (ColumnElement column : columns) {
+            writer.emitStatement("values.put(\"" + column.getColumnName() + "\", " + createSerializedValue(column, typeAdapterNames) + ")");
         }
 
         writer.emitStatement("return values");
@@ -393,6 +745,129 @@ import static javax.lang.model.element.Modifier.STATIC;
         writer.emitEmptyLine();
     }
 
+    /**
+     * Writes a method binding the serialized values of an entity to the insert or update statement, in column order.
+     */
+    private void writeBindValues(final JavaWriter writer, final String modelQualifiedName, final Set<ColumnElement> columns,
+                                 final Map<String, String> typeAdapterNames) throws IOException {
+        writer.beginMethod(void.class.getSimpleName(), "bindValues", PRIVATE, "final SQLiteStatement", "statement", "final " + modelQualifiedName, "entity");
+
+        int index = 1;
+        for (ColumnElement column : columns) {
+            String bindMethod = BIND_METHOD_MAP.get(column.getSerializedQualifiedName());
+            String value = createSerializedValue(column, typeAdapterNames);
+
+            if (column.isPrimitive() && !column.requiresTypeAdapter()) {
+                writer.emitStatement("statement.%s(%d, %s)", bindMethod, index, value);
+            } else {
+                String variable = "value" + index;
+                writer.emitStatement("%s %s = %s", writer.compressType(column.getSerializedQualifiedName()), variable, value);
+                writer.beginControlFlow("if (" + variable + " == null)");
+                writer.emitStatement("statement.bindNull(%d)", index);
+                writer.nextControlFlow("else");
+                writer.emitStatement("statement.%s(%d, %s)", bindMethod, index, variable);
+                writer.endControlFlow();
+            }
+
+            index++;
+        }
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    private void writeGetStatements(final JavaWriter writer, final String tableName, final Set<ColumnElement> columns) throws IOException {
+        StringBuilder columnNames = new StringBuilder();
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for (ColumnElement column : columns) {
+            if (columnNames.length() > 0) {
+                columnNames.append(", ");
+                parameters.append(", ");
+                assignments.append(", ");
+            }
+            columnNames.append(column.getColumnName());
+            parameters.append('?');
+            assignments.append(column.getColumnName()).append("=?");
+        }
+
+        writeGetStatement(writer, "Insert", "INSERT INTO " + tableName + " (" + columnNames + ") VALUES (" + parameters + ')');
+        writeGetStatement(writer, "Update", "UPDATE " + tableName + " SET " + assignments + " WHERE " + Model.COLUMN_ID + "=?");
+        writeGetStatement(writer, "Delete", "DELETE FROM " + tableName + " WHERE " + Model.COLUMN_ID + "=?");
+    }
+
+    private void writeGetStatement(final JavaWriter writer, final String name, final String sql) throws IOException {
+        String field = "m" + name + "Statement";
+
+        writer.beginMethod(SQLiteStatement.class.getSimpleName(), "get" + name + "Statement", PRIVATE);
+
+        writer.beginControlFlow("if (%s == null)", field);
+        writer.emitStatement("%s = mDatabase.compileStatement(\"%s\")", field, sql);
+        writer.endControlFlow();
+
+        writer.emitStatement("return %s", field);
+
+        writer.endMethod();
+        writer.emitEmptyLine();
+    }
+
+    /**
+     * Creates the expression for the serialized value of given column, as stored in the database.
+     */
+    private String createSerializedValue(final ColumnElement column, final Map<String, String> typeAdapterNames) {
+        final StringBuilder value = new StringBuilder();
+        int closeParens = 0;
+
+        if (!column.isModel() && column.requiresTypeAdapter()) {
+            closeParens++;
+            value.append("m")
+                 .append(typeAdapterNames.get(column.getDeserializedQualifiedName()))
+                 .append("TypeAdapter.serialize(");
+        }
+
+        if (column.getGetter() == null) {
+            value.append("entity.").append(column.getFieldName());
+        } else {
+            value.append("entity.").append(column.getGetter());
+        }
+
+        if (column.isModel()) {
+            value.append(" != null ? ");
+            value.append("entity.");
+            if (column.getGetter() == null) {
+                value.append(column.getFieldName());
+            } else {
+                value.append(column.getGetter());
+            }
+            value.append(".getId()");
+            value.append(" : null");
+        }
+
+        for (int i = 0; i < closeParens; i++) {
+            value.append(")");
+        }
+
+        return value.toString();
+    }
+
+    private void writeGetRepositories(final JavaWriter writer, final Map<String, String> repositoryNames) throws IOException {
+        for (Map.Entry<String, String> entry : repositoryNames.entrySet()) {
+            String type = String.format("%s<%s>", ModelRepository.class.getSimpleName(), entry.getKey());
+            String field = "m" + entry.getValue() + "Repository";
+
+            writer.beginMethod(type, "get" + entry.getValue() + "Repository", PRIVATE);
+
+            writer.beginControlFlow("if (" + field + " == null)");
+            writer.emitStatement("%s = mEllie.getModelRepository(%s.class)", field, entry.getKey());
+            writer.endControlFlow();
+
+            writer.emitStatement("return %s", field);
+
+            writer.endMethod();
+            writer.emitEmptyLine();
+        }
+    }
+
     private String createSimpleName(final TypeElement element) {
         return element.getSimpleName() + "$$Repository";
     }
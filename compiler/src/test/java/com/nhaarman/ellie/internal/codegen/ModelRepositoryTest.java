@@ -41,53 +41,129 @@ public class ModelRepositoryTest {
                 "",
                 "import android.content.ContentValues;",
                 "import android.database.Cursor;",
+                "import android.database.SQLException;",
                 "import android.database.sqlite.SQLiteDatabase;",
+                "import android.database.sqlite.SQLiteStatement;",
+                "import com.nhaarman.ellie.CacheStats;",
                 "import com.nhaarman.ellie.Ellie;",
                 "import com.nhaarman.ellie.ModelRepository;",
                 "import com.nhaarman.ellie.Note;",
-                "import com.nhaarman.ellie.query.Select;",
-                "import com.nhaarman.ellie.util.LruCache;",
+                "import com.nhaarman.ellie.TypeAdapter;",
+                "import com.nhaarman.ellie.util.LongCache;",
+                "import com.nhaarman.ellie.util.SizeOf;",
                 "import java.lang.Long;",
+                "import java.util.Collection;",
                 "import java.util.Date;",
+                "import java.util.List;",
                 "",
                 "public final class Note$$Repository",
                 "    implements ModelRepository<Note> {",
                 "",
+                "    private static final String FIND_SQL = \"SELECT _id, title, body, date FROM notes WHERE _id=?\";",
+                "    private static final int[] FIND_COLUMN_INDICES = {0, 1, 2, 3};",
+                "",
                 "    private final Ellie mEllie;",
                 "    private final SQLiteDatabase mDatabase;",
-                "    private final LruCache<String, Note> mCache;",
+                "    private final LongCache<Note> mCache;",
+                "    private final TypeAdapter<Date, Long> mDateTypeAdapter;",
+                "    private final Object mStatementLock = new Object();",
+                "    private SQLiteStatement mInsertStatement;",
+                "    private SQLiteStatement mUpdateStatement;",
+                "    private SQLiteStatement mDeleteStatement;",
                 "",
                 "    public Note$$Repository(final Ellie ellie, final SQLiteDatabase database, final int cacheSize) {",
                 "        mEllie = ellie;",
                 "        mDatabase = database;",
-                "        mCache = new LruCache<>(cacheSize);",
+                "        mCache = ellie.createEntityCache(this, cacheSize);",
+                "        mDateTypeAdapter = ellie.getTypeAdapter(Date.class);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final Note newInstance() {",
+                "        return new Note();",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Note find(final long id) {",
-                "        return new Select().from(Note.class).where(\"_id=?\", id).fetchSingle();",
+                "        Cursor cursor = mEllie.queryById(FIND_SQL, id);",
+                "        try {",
+                "            if (!cursor.moveToFirst()) {",
+                "                return null;",
+                "            }",
+                "",
+                "            Note entity = getEntity(id);",
+                "            if (entity == null) {",
+                "                entity = newInstance();",
+                "            }",
+                "            load(entity, cursor, FIND_COLUMN_INDICES);",
+                "            putEntity(entity);",
+                "            return entity;",
+                "        } finally {",
+                "            cursor.close();",
+                "        }",
+                "    }",
+                "",
+                "    @Override",
+                "    public final List<Note> findAll(final long... ids) {",
+                "        return mEllie.findAll(this, Note.class, ids, false);",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Long create(final Note entity) {",
-                "        ContentValues values = createContentValues(entity);",
-                "        entity.setId(mDatabase.insert(\"notes\", null, values));",
-                "        return entity.getId();",
+                "        long id;",
+                "        boolean transaction = mEllie.beginWrite(Note.class);",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement statement = getInsertStatement();",
+                "                bindValues(statement, entity);",
+                "                id = statement.executeInsert();",
+                "            }",
+                "        } catch (SQLException e) {",
+                "            id = -1L;",
+                "        } finally {",
+                "            mEllie.endWrite(transaction);",
+                "        }",
+                "",
+                "        entity.setId(id);",
+                "        if (id != -1L) {",
+                "            mEllie.notifyChange(Note.class, id);",
+                "        }",
+                "        return id;",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Long update(final Note entity) {",
-                "        ContentValues values = createContentValues(entity);",
-                "        mDatabase.update(\"notes\", values, Model.COLUMN_ID + \"=?\", new String[]{entity.getId().toString()});",
+                "        boolean transaction = mEllie.beginWrite(Note.class);",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement statement = getUpdateStatement();",
+                "                bindValues(statement, entity);",
+                "                statement.bindLong(5, entity.getId());",
+                "                statement.executeUpdateDelete();",
+                "            }",
+                "        } finally {",
+                "            mEllie.endWrite(transaction);",
+                "        }",
+                "        mEllie.notifyChange(Note.class, entity.getId());",
                 "        return entity.getId();",
                 "    }",
                 "",
                 "    @Override",
+                "    public final int[] getColumnIndices(final Cursor cursor) {",
+                "        return new int[]{cursor.getColumnIndex(\"_id\"), cursor.getColumnIndex(\"title\"), cursor.getColumnIndex(\"body\"), cursor.getColumnIndex(\"date\")};",
+                "    }",
+                "",
+                "    @Override",
                 "    public final void load(final Note entity, final Cursor cursor) {",
-                "        entity.setId(cursor.getLong(cursor.getColumnIndex(\"_id\")));",
-                "        entity.setTitle(cursor.getString(cursor.getColumnIndex(\"title\")));",
-                "        entity.body = cursor.getString(cursor.getColumnIndex(\"body\"));",
-                "        entity.date = mEllie.getTypeAdapter(Date.class).deserialize(cursor.getLong(cursor.getColumnIndex(\"date\")));",
+                "        load(entity, cursor, getColumnIndices(cursor));",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void load(final Note entity, final Cursor cursor, final int[] columnIndices) {",
+                "        entity.setId(cursor.getLong(columnIndices[0]));",
+                "        entity.setTitle(cursor.getString(columnIndices[1]));",
+                "        entity.body = cursor.getString(columnIndices[2]);",
+                "        entity.date = mDateTypeAdapter.deserialize(cursor.getLong(columnIndices[3]));",
                 "    }",
                 "",
                 "    @Override",
@@ -101,29 +177,83 @@ public class ModelRepositoryTest {
                 "",
                 "    @Override",
                 "    public final void delete(final Note entity) {",
-                "        mDatabase.delete(\"notes\", \"_id=?\", new String[]{entity.getId().toString()});;",
+                "        boolean transaction = mEllie.beginWrite(Note.class);",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement statement = getDeleteStatement();",
+                "                statement.bindLong(1, entity.getId());",
+                "                statement.executeUpdateDelete();",
+                "            }",
+                "        } finally {",
+                "            mEllie.endWrite(transaction);",
+                "        }",
+                "        mEllie.notifyChange(Note.class, entity.getId());",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void saveAll(final Collection<Note> entities) {",
+                "        long[] ids = new long[entities.size()];",
+                "        mEllie.beginTransaction();",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement insertStatement = getInsertStatement();",
+                "                SQLiteStatement updateStatement = getUpdateStatement();",
+                "                int i = 0;",
+                "                for (Note entity : entities) {",
+                "                    if (entity.getId() == null) {",
+                "                        bindValues(insertStatement, entity);",
+                "                        ids[i] = insertStatement.executeInsert();",
+                "                    } else {",
+                "                        bindValues(updateStatement, entity);",
+                "                        updateStatement.bindLong(5, entity.getId());",
+                "                        updateStatement.executeUpdateDelete();",
+                "                        ids[i] = entity.getId();",
+                "                    }",
+                "                    i++;",
+                "                }",
+                "            }",
+                "            mEllie.setTransactionSuccessful();",
+                "        } finally {",
+                "            mEllie.endTransaction();",
+                "        }",
+                "        int i = 0;",
+                "        for (Note entity : entities) {",
+                "            entity.setId(ids[i++]);",
+                "            putEntity(entity);",
+                "        }",
+                "        mEllie.notifyChange(Note.class, ids);",
                 "    }",
                 "",
                 "    @Override",
                 "    public final void putEntity(final Note entity) {",
                 "        if (entity.getId() != null) {",
-                "            mCache.put(getEntityIdentifier(entity.getId()), entity);",
+                "            mEllie.putEntity(this, mCache, entity.getId(), entity);",
                 "        }",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Note getEntity(final long id) {",
-                "        return mCache.get(getEntityIdentifier(id));",
+                "        return mEllie.getEntity(this, mCache, id);",
                 "    }",
                 "",
                 "    @Override",
                 "    public final void removeEntity(final Note entity) {",
                 "        if (entity.getId() != null) {",
-                "            mCache.remove(getEntityIdentifier(entity.getId()));",
+                "            mEllie.removeEntity(this, mCache, entity.getId());",
                 "        }",
                 "    }",
                 "",
                 "    @Override",
+                "    public final void removeEntity(final long id) {",
+                "        mEllie.removeEntity(this, mCache, id);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void removeAllEntities() {",
+                "        mEllie.removeAllEntities(this, mCache);",
+                "    }",
+                "",
+                "    @Override",
                 "    public final Note getOrFindEntity(final long id) {",
                 "        Note entity = getEntity(id);",
                 "        if (entity == null) {",
@@ -132,17 +262,86 @@ public class ModelRepositoryTest {
                 "        return entity;",
                 "    }",
                 "",
+                "    @Override",
+                "    public final List<Note> getOrFindAll(final long... ids) {",
+                "        return mEllie.findAll(this, Note.class, ids, true);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void prefetchEntities(final long[] ids) {",
+                "        mEllie.prefetchEntities(this, Note.class, ids);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void prefetchReferences(final Cursor cursor, final int[] columnIndices) {",
+                "    }",
+                "",
+                "    @Override",
+                "    public final int sizeOf(final Note entity) {",
+                "        return 28 + SizeOf.object(entity.getId()) + SizeOf.object(entity.getTitle()) + SizeOf.object(entity.body) + SizeOf.object(entity.date);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final CacheStats getCacheStats() {",
+                "        return new CacheStats(Note.class, mCache);",
+                "    }",
+                "",
+                "    @Override",
                 "    public final ContentValues createContentValues(final Note entity) {",
                 "        ContentValues values = new ContentValues();",
                 "        values.put(\"_id\", entity.getId());",
                 "        values.put(\"title\", entity.getTitle());",
                 "        values.put(\"body\", entity.body);",
-                "        values.put(\"date\", (Long) mEllie.getTypeAdapter(Date.class).serialize(entity.date));",
+                "        values.put(\"date\", mDateTypeAdapter.serialize(entity.date));",
                 "        return values;",
                 "    }",
                 "",
-                "    private static String getEntityIdentifier(final long id) {",
-                "        return \"Note@\" + id;",
+                "    private final void bindValues(final SQLiteStatement statement, final Note entity) {",
+                "        Long value1 = entity.getId();",
+                "        if (value1 == null) {",
+                "            statement.bindNull(1);",
+                "        } else {",
+                "            statement.bindLong(1, value1);",
+                "        }",
+                "        String value2 = entity.getTitle();",
+                "        if (value2 == null) {",
+                "            statement.bindNull(2);",
+                "        } else {",
+                "            statement.bindString(2, value2);",
+                "        }",
+                "        String value3 = entity.body;",
+                "        if (value3 == null) {",
+                "            statement.bindNull(3);",
+                "        } else {",
+                "            statement.bindString(3, value3);",
+                "        }",
+                "        Long value4 = mDateTypeAdapter.serialize(entity.date);",
+                "        if (value4 == null) {",
+                "            statement.bindNull(4);",
+                "        } else {",
+                "            statement.bindLong(4, value4);",
+                "        }",
+                "    }",
+                "",
+                "    private final SQLiteStatement getInsertStatement() {",
+                "        if (mInsertStatement == null) {",
+                "            mInsertStatement = mDatabase.compileStatement(\"INSERT INTO notes (_id, title, body, date) VALUES (?, ?, ?, ?)\");",
+                "        }",
+                "        return mInsertStatement;",
+                "    }",
+                "",
+                "    private final SQLiteStatement getUpdateStatement() {",
+                "        if (mUpdateStatement == null) {",
+                "            mUpdateStatement = mDatabase.compileStatement(\"UPDATE notes SET _id=?, title=?, body=?, date=? WHERE _id=?\");",
+                "        }",
+                "        return mUpdateStatement;",
+                "    }",
+                "",
+                "    private final SQLiteStatement getDeleteStatement() {",
+                "        if (mDeleteStatement == null) {",
+                "            mDeleteStatement = mDatabase.compileStatement(\"DELETE FROM notes WHERE _id=?\");",
+                "        }",
+                "        return mDeleteStatement;",
                 "    }",
                 "",
                 "}"
@@ -195,54 +394,130 @@ public class ModelRepositoryTest {
                 "",
                 "import android.content.ContentValues;",
                 "import android.database.Cursor;",
+                "import android.database.SQLException;",
                 "import android.database.sqlite.SQLiteDatabase;",
+                "import android.database.sqlite.SQLiteStatement;",
+                "import com.nhaarman.ellie.CacheStats;",
                 "import com.nhaarman.ellie.Ellie;",
                 "import com.nhaarman.ellie.ModelRepository;",
                 "import com.nhaarman.ellie.Note;",
                 "import com.nhaarman.ellie.NoteRepository;",
-                "import com.nhaarman.ellie.query.Select;",
-                "import com.nhaarman.ellie.util.LruCache;",
+                "import com.nhaarman.ellie.TypeAdapter;",
+                "import com.nhaarman.ellie.util.LongCache;",
+                "import com.nhaarman.ellie.util.SizeOf;",
                 "import java.lang.Long;",
+                "import java.util.Collection;",
                 "import java.util.Date;",
+                "import java.util.List;",
                 "",
                 "public final class Note$$Repository extends NoteRepository",
                 "    implements ModelRepository<Note> {",
                 "",
+                "    private static final String FIND_SQL = \"SELECT _id, title, body, date FROM notes WHERE _id=?\";",
+                "    private static final int[] FIND_COLUMN_INDICES = {0, 1, 2, 3};",
+                "",
                 "    private final Ellie mEllie;",
                 "    private final SQLiteDatabase mDatabase;",
-                "    private final LruCache<String, Note> mCache;",
+                "    private final LongCache<Note> mCache;",
+                "    private final TypeAdapter<Date, Long> mDateTypeAdapter;",
+                "    private final Object mStatementLock = new Object();",
+                "    private SQLiteStatement mInsertStatement;",
+                "    private SQLiteStatement mUpdateStatement;",
+                "    private SQLiteStatement mDeleteStatement;",
                 "",
                 "    public Note$$Repository(final Ellie ellie, final SQLiteDatabase database, final int cacheSize) {",
                 "        mEllie = ellie;",
                 "        mDatabase = database;",
-                "        mCache = new LruCache<>(cacheSize);",
+                "        mCache = ellie.createEntityCache(this, cacheSize);",
+                "        mDateTypeAdapter = ellie.getTypeAdapter(Date.class);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final Note newInstance() {",
+                "        return new Note();",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Note find(final long id) {",
-                "        return new Select().from(Note.class).where(\"_id=?\", id).fetchSingle();",
+                "        Cursor cursor = mEllie.queryById(FIND_SQL, id);",
+                "        try {",
+                "            if (!cursor.moveToFirst()) {",
+                "                return null;",
+                "            }",
+                "",
+                "            Note entity = getEntity(id);",
+                "            if (entity == null) {",
+                "                entity = newInstance();",
+                "            }",
+                "            load(entity, cursor, FIND_COLUMN_INDICES);",
+                "            putEntity(entity);",
+                "            return entity;",
+                "        } finally {",
+                "            cursor.close();",
+                "        }",
+                "    }",
+                "",
+                "    @Override",
+                "    public final List<Note> findAll(final long... ids) {",
+                "        return mEllie.findAll(this, Note.class, ids, false);",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Long create(final Note entity) {",
-                "        ContentValues values = createContentValues(entity);",
-                "        entity.setId(mDatabase.insert(\"notes\", null, values));",
-                "        return entity.getId();",
+                "        long id;",
+                "        boolean transaction = mEllie.beginWrite(Note.class);",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement statement = getInsertStatement();",
+                "                bindValues(statement, entity);",
+                "                id = statement.executeInsert();",
+                "            }",
+                "        } catch (SQLException e) {",
+                "            id = -1L;",
+                "        } finally {",
+                "            mEllie.endWrite(transaction);",
+                "        }",
+                "",
+                "        entity.setId(id);",
+                "        if (id != -1L) {",
+                "            mEllie.notifyChange(Note.class, id);",
+                "        }",
+                "        return id;",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Long update(final Note entity) {",
-                "        ContentValues values = createContentValues(entity);",
-                "        mDatabase.update(\"notes\", values, Model.COLUMN_ID + \"=?\", new String[]{entity.getId().toString()});",
+                "        boolean transaction = mEllie.beginWrite(Note.class);",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement statement = getUpdateStatement();",
+                "                bindValues(statement, entity);",
+                "                statement.bindLong(5, entity.getId());",
+                "                statement.executeUpdateDelete();",
+                "            }",
+                "        } finally {",
+                "            mEllie.endWrite(transaction);",
+                "        }",
+                "        mEllie.notifyChange(Note.class, entity.getId());",
                 "        return entity.getId();",
                 "    }",
                 "",
                 "    @Override",
+                "    public final int[] getColumnIndices(final Cursor cursor) {",
+                "        return new int[]{cursor.getColumnIndex(\"_id\"), cursor.getColumnIndex(\"title\"), cursor.getColumnIndex(\"body\"), cursor.getColumnIndex(\"date\")};",
+                "    }",
+                "",
+                "    @Override",
                 "    public final void load(final Note entity, final Cursor cursor) {",
-                "        entity.setId(cursor.getLong(cursor.getColumnIndex(\"_id\")));",
-                "        entity.setTitle(cursor.getString(cursor.getColumnIndex(\"title\")));",
-                "        entity.body = cursor.getString(cursor.getColumnIndex(\"body\"));",
-                "        entity.date = mEllie.getTypeAdapter(Date.class).deserialize(cursor.getLong(cursor.getColumnIndex(\"date\")));",
+                "        load(entity, cursor, getColumnIndices(cursor));",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void load(final Note entity, final Cursor cursor, final int[] columnIndices) {",
+                "        entity.setId(cursor.getLong(columnIndices[0]));",
+                "        entity.setTitle(cursor.getString(columnIndices[1]));",
+                "        entity.body = cursor.getString(columnIndices[2]);",
+                "        entity.date = mDateTypeAdapter.deserialize(cursor.getLong(columnIndices[3]));",
                 "    }",
                 "",
                 "    @Override",
@@ -256,29 +531,83 @@ public class ModelRepositoryTest {
                 "",
                 "    @Override",
                 "    public final void delete(final Note entity) {",
-                "        mDatabase.delete(\"notes\", \"_id=?\", new String[]{entity.getId().toString()});;",
+                "        boolean transaction = mEllie.beginWrite(Note.class);",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement statement = getDeleteStatement();",
+                "                statement.bindLong(1, entity.getId());",
+                "                statement.executeUpdateDelete();",
+                "            }",
+                "        } finally {",
+                "            mEllie.endWrite(transaction);",
+                "        }",
+                "        mEllie.notifyChange(Note.class, entity.getId());",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void saveAll(final Collection<Note> entities) {",
+                "        long[] ids = new long[entities.size()];",
+                "        mEllie.beginTransaction();",
+                "        try {",
+                "            synchronized (mStatementLock) {",
+                "                SQLiteStatement insertStatement = getInsertStatement();",
+                "                SQLiteStatement updateStatement = getUpdateStatement();",
+                "                int i = 0;",
+                "                for (Note entity : entities) {",
+                "                    if (entity.getId() == null) {",
+                "                        bindValues(insertStatement, entity);",
+                "                        ids[i] = insertStatement.executeInsert();",
+                "                    } else {",
+                "                        bindValues(updateStatement, entity);",
+                "                        updateStatement.bindLong(5, entity.getId());",
+                "                        updateStatement.executeUpdateDelete();",
+                "                        ids[i] = entity.getId();",
+                "                    }",
+                "                    i++;",
+                "                }",
+                "            }",
+                "            mEllie.setTransactionSuccessful();",
+                "        } finally {",
+                "            mEllie.endTransaction();",
+                "        }",
+                "        int i = 0;",
+                "        for (Note entity : entities) {",
+                "            entity.setId(ids[i++]);",
+                "            putEntity(entity);",
+                "        }",
+                "        mEllie.notifyChange(Note.class, ids);",
                 "    }",
                 "",
                 "    @Override",
                 "    public final void putEntity(final Note entity) {",
                 "        if (entity.getId() != null) {",
-                "            mCache.put(getEntityIdentifier(entity.getId()), entity);",
+                "            mEllie.putEntity(this, mCache, entity.getId(), entity);",
                 "        }",
                 "    }",
                 "",
                 "    @Override",
                 "    public final Note getEntity(final long id) {",
-                "        return mCache.get(getEntityIdentifier(id));",
+                "        return mEllie.getEntity(this, mCache, id);",
                 "    }",
                 "",
                 "    @Override",
                 "    public final void removeEntity(final Note entity) {",
                 "        if (entity.getId() != null) {",
-                "            mCache.remove(getEntityIdentifier(entity.getId()));",
+                "            mEllie.removeEntity(this, mCache, entity.getId());",
                 "        }",
                 "    }",
                 "",
                 "    @Override",
+                "    public final void removeEntity(final long id) {",
+                "        mEllie.removeEntity(this, mCache, id);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void removeAllEntities() {",
+                "        mEllie.removeAllEntities(this, mCache);",
+                "    }",
+                "",
+                "    @Override",
                 "    public final Note getOrFindEntity(final long id) {",
                 "        Note entity = getEntity(id);",
                 "        if (entity == null) {",
@@ -287,17 +616,86 @@ public class ModelRepositoryTest {
                 "        return entity;",
                 "    }",
                 "",
+                "    @Override",
+                "    public final List<Note> getOrFindAll(final long... ids) {",
+                "        return mEllie.findAll(this, Note.class, ids, true);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void prefetchEntities(final long[] ids) {",
+                "        mEllie.prefetchEntities(this, Note.class, ids);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final void prefetchReferences(final Cursor cursor, final int[] columnIndices) {",
+                "    }",
+                "",
+                "    @Override",
+                "    public final int sizeOf(final Note entity) {",
+                "        return 28 + SizeOf.object(entity.getId()) + SizeOf.object(entity.getTitle()) + SizeOf.object(entity.body) + SizeOf.object(entity.date);",
+                "    }",
+                "",
+                "    @Override",
+                "    public final CacheStats getCacheStats() {",
+                "        return new CacheStats(Note.class, mCache);",
+                "    }",
+                "",
+                "    @Override",
                 "    public final ContentValues createContentValues(final Note entity) {",
                 "        ContentValues values = new ContentValues();",
                 "        values.put(\"_id\", entity.getId());",
                 "        values.put(\"title\", entity.getTitle());",
                 "        values.put(\"body\", entity.body);",
-                "        values.put(\"date\", (Long) mEllie.getTypeAdapter(Date.class).serialize(entity.date));",
+                "        values.put(\"date\", mDateTypeAdapter.serialize(entity.date));",
                 "        return values;",
                 "    }",
                 "",
-                "    private static String getEntityIdentifier(final long id) {",
-                "        return \"Note@\" + id;",
+                "    private final void bindValues(final SQLiteStatement statement, final Note entity) {",
+                "        Long value1 = entity.getId();",
+                "        if (value1 == null) {",
+                "            statement.bindNull(1);",
+                "        } else {",
+                "            statement.bindLong(1, value1);",
+                "        }",
+                "        String value2 = entity.getTitle();",
+                "        if (value2 == null) {",
+                "            statement.bindNull(2);",
+                "        } else {",
+                "            statement.bindString(2, value2);",
+                "        }",
+                "        String value3 = entity.body;",
+                "        if (value3 == null) {",
+                "            statement.bindNull(3);",
+                "        } else {",
+                "            statement.bindString(3, value3);",
+                "        }",
+                "        Long value4 = mDateTypeAdapter.serialize(entity.date);",
+                "        if (value4 == null) {",
+                "            statement.bindNull(4);",
+                "        } else {",
+                "            statement.bindLong(4, value4);",
+                "        }",
+                "    }",
+                "",
+                "    private final SQLiteStatement getInsertStatement() {",
+                "        if (mInsertStatement == null) {",
+                "            mInsertStatement = mDatabase.compileStatement(\"INSERT INTO notes (_id, title, body, date) VALUES (?, ?, ?, ?)\");",
+                "        }",
+                "        return mInsertStatement;",
+                "    }",
+                "",
+                "    private final SQLiteStatement getUpdateStatement() {",
+                "        if (mUpdateStatement == null) {",
+                "            mUpdateStatement = mDatabase.compileStatement(\"UPDATE notes SET _id=?, title=?, body=?, date=? WHERE _id=?\");",
+                "        }",
+                "        return mUpdateStatement;",
+                "    }",
+                "",
+                "    private final SQLiteStatement getDeleteStatement() {",
+                "        if (mDeleteStatement == null) {",
+                "            mDeleteStatement = mDatabase.compileStatement(\"DELETE FROM notes WHERE _id=?\");",
+                "        }",
+                "        return mDeleteStatement;",
                 "    }",
                 "",
                 "}"
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import com.nhaarman.ellie.util.LongCache;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable snapshot of the statistics of the entity cache of a {@link ModelRepository}.
+ */
+public final class CacheStats {
+
+    @NotNull
+    private final Class<? extends Model> mModelType;
+
+    private final int mSize;
+    private final int mMaxSize;
+    private final int mHitCount;
+    private final int mMissCount;
+    private final int mPutCount;
+    private final int mEvictionCount;
+
+    /**
+     * Creates a snapshot of the current statistics of given cache.
+     *
+     * @param modelType The type of the cached models.
+     * @param cache     The cache.
+     */
+    CacheStats(@NotNull final Class<? extends Model> modelType, @NotNull final LongCache<?> cache) {
+        this(modelType, cache.size(), cache.maxSize(), cache.hitCount(), cache.missCount(), cache.putCount(), cache.evictionCount());
+    }
+
+    /**
+     * Creates a snapshot of given statistics.
+     *
+     * @param modelType     The type of the cached models.
+     * @param size          The size of the cache.
+     * @param maxSize       The maximum size of the cache.
+     * @param hitCount      The number of cache hits.
+     * @param missCount     The number of cache misses.
+     * @param putCount      The number of puts.
+     * @param evictionCount The number of evictions.
+     */
+    public CacheStats(@NotNull final Class<? extends Model> modelType, final int size, final int maxSize,
+                      final int hitCount, final int missCount, final int putCount, final int evictionCount) {
+        mModelType = modelType;
+        mSize = size;
+        mMaxSize = maxSize;
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mPutCount = putCount;
+        mEvictionCount = evictionCount;
+    }
+
+    /**
+     * Returns the type of the models in the cache.
+     */
+    @NotNull
+    public Class<? extends Model> getModelType() {
+        return mModelType;
+    }
+
+    /**
+     * Returns the size of the cache.
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Returns the maximum size of the cache.
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of times a requested entity was present in the cache.
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of times a requested entity was not present in the cache.
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of times an entity was put in the cache.
+     */
+    public int getPutCount() {
+        return mPutCount;
+    }
+
+    /**
+     * Returns the number of entities that have been evicted from the cache.
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Returns the ratio of requests that were served from the cache.
+     *
+     * @return A value between {@code 0} and {@code 1}, or {@code 0} if there have been no requests.
+     */
+    public double getHitRate() {
+        int requestCount = mHitCount + mMissCount;
+        return requestCount == 0 ? 0 : (double) mHitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStats[model=%s,size=%d,maxSize=%d,hits=%d,misses=%d,puts=%d,evictions=%d,hitRate=%d%%]",
+                mModelType.getSimpleName(), mSize, mMaxSize, mHitCount, mMissCount, mPutCount, mEvictionCount,
+                (int) (getHitRate() * 100)
+        );
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives periodic reports of the entity cache statistics.
+ *
+ * @see Ellie#setCacheStatsListener(CacheStatsListener, long, TimeUnit)
+ */
+public interface CacheStatsListener {
+
+    /**
+     * Called periodically with a snapshot of the statistics of each {@link ModelRepository}.
+     * This method is called on a background thread.
+     *
+     * @param cacheStats The statistics per repository.
+     */
+    void onCacheStats(@NotNull List<CacheStats> cacheStats);
+}
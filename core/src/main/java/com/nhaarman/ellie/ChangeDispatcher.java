@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers change notifications to the {@link TableChangeListener}s and {@link RowChangeListener}s.
+ * {@link Ellie} dispatches the changes of a transaction as one batch when it commits.
+ * When a debounce window is set, batches are merged further and delivered on a background thread,
+ * at most one window after the first pending change.
+ */
+final class ChangeDispatcher {
+
+    @NotNull
+    private final List<TableChangeListener> mListeners = new CopyOnWriteArrayList<>();
+
+    @NotNull
+    private final List<RowChangeListener> mRowListeners = new CopyOnWriteArrayList<>();
+
+    @NotNull
+    private final Object mLock = new Object();
+
+    /**
+     * The debounce window in milliseconds, or {@code 0} to deliver right away. Guarded by {@link #mLock}.
+     */
+    private long mDebounceMillis;
+
+    /**
+     * The changes that wait for the end of the debounce window. Guarded by {@link #mLock}.
+     */
+    @NotNull
+    private ChangeSet mPending = new ChangeSet();
+
+    /**
+     * The scheduled delivery of {@link #mPending}. Guarded by {@link #mLock}.
+     */
+    @Nullable
+    private ScheduledFuture<?> mFlush;
+
+    /**
+     * The executor that makes debounced deliveries, created on first use. Guarded by {@link #mLock}.
+     */
+    @Nullable
+    private ScheduledExecutorService mExecutor;
+
+    void addListener(@NotNull final TableChangeListener listener) {
+        mListeners.add(listener);
+    }
+
+    void removeListener(@NotNull final TableChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    void addRowListener(@NotNull final RowChangeListener listener) {
+        mRowListeners.add(listener);
+    }
+
+    void removeRowListener(@NotNull final RowChangeListener listener) {
+        mRowListeners.remove(listener);
+    }
+
+    /**
+     * Sets the debounce window. Pending changes are delivered right away when the window is set to {@code 0}.
+     */
+    void setDebounce(final long window, @NotNull final TimeUnit unit) {
+        if (window < 0) {
+            throw new IllegalArgumentException("window < 0");
+        }
+
+        synchronized (mLock) {
+            mDebounceMillis = unit.toMillis(window);
+        }
+        if (window == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Delivers a single change to the listeners, or adds it to the pending changes of the debounce window.
+     *
+     * @param table The type class of the model of which the table has changed.
+     * @param ids   The ids of the changed rows, or {@code null} if they are unknown.
+     */
+    void dispatch(@NotNull final Class<? extends Model> table, @Nullable final long[] ids) {
+        synchronized (mLock) {
+            if (mDebounceMillis > 0) {
+                mPending.add(table, ids);
+                scheduleFlush();
+                return;
+            }
+        }
+
+        deliver(table, ids);
+    }
+
+    /**
+     * Delivers given changes to the listeners, or adds them to the pending changes of the debounce window.
+     */
+    void dispatch(@NotNull final ChangeSet changes) {
+        synchronized (mLock) {
+            if (mDebounceMillis > 0) {
+                mPending.addAll(changes);
+                scheduleFlush();
+                return;
+            }
+        }
+
+        deliver(changes);
+    }
+
+    /**
+     * Schedules the delivery of the pending changes at the end of the debounce window, unless it is already scheduled.
+     * Must be called while holding {@link #mLock}.
+     */
+    private void scheduleFlush() {
+        if (mFlush == null) {
+            mFlush = getExecutor().schedule(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, mDebounceMillis, TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Delivers the pending changes of the debounce window.
+     */
+    private void flush() {
+        ChangeSet changes;
+        synchronized (mLock) {
+            if (mFlush != null) {
+                mFlush.cancel(false);
+                mFlush = null;
+            }
+            changes = mPending;
+            mPending = new ChangeSet();
+        }
+
+        deliver(changes);
+    }
+
+    /**
+     * Delivers the pending changes right away, and shuts down the executor of the debounce window.
+     * A change that is debounced afterwards creates a new executor.
+     */
+    void close() {
+        flush();
+
+        ScheduledExecutorService executor;
+        synchronized (mLock) {
+            executor = mExecutor;
+            mExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void deliver(@NotNull final ChangeSet changes) {
+        boolean rows = !mRowListeners.isEmpty();
+        for (Class<? extends Model> table : changes.getTables()) {
+            deliver(table, rows ? changes.getIds(table) : null);
+        }
+    }
+
+    private void deliver(@NotNull final Class<? extends Model> table, @Nullable final long[] ids) {
+        for (TableChangeListener listener : mListeners) {
+            listener.onTableChanged(table);
+        }
+        for (RowChangeListener listener : mRowListeners) {
+            listener.onRowsChanged(table, ids);
+        }
+    }
+
+    @NotNull
+    private ScheduledExecutorService getExecutor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NotNull final Runnable runnable) {
+                            Thread thread = new Thread(runnable, "Ellie notifications");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+            );
+        }
+        return mExecutor;
+    }
+}
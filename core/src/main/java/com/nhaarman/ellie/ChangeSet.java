@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A deduplicated set of changes: the changed tables, in order of their first change, with the ids of their changed rows.
+ * The rows of a table are unknown once a change without ids was added, or once more than {@link #MAX_ROWS} rows changed;
+ * a large import then costs a single table change instead of a set of ids.
+ * Not thread safe.
+ */
+final class ChangeSet {
+
+    /**
+     * The maximum number of row ids that are tracked per table.
+     */
+    static final int MAX_ROWS = 1000;
+
+    /**
+     * The changed row ids per table, or a {@code null} value if the changed rows of the table are unknown.
+     */
+    @NotNull
+    private final Map<Class<? extends Model>, Set<Long>> mChanges = new LinkedHashMap<>();
+
+    /**
+     * Adds a change of given table.
+     *
+     * @param table The type class of the model of which the table has changed.
+     * @param ids   The ids of the changed rows, or {@code null} if they are unknown.
+     */
+    void add(@NotNull final Class<? extends Model> table, @Nullable final long[] ids) {
+        Set<Long> rows = mChanges.get(table);
+        if (rows == null) {
+            if (mChanges.containsKey(table)) {
+                return;
+            }
+            rows = new LinkedHashSet<>();
+        }
+
+        if (ids == null || rows.size() + ids.length > MAX_ROWS) {
+            mChanges.put(table, null);
+            return;
+        }
+
+        for (long id : ids) {
+            rows.add(id);
+        }
+        mChanges.put(table, rows);
+    }
+
+    /**
+     * Adds the changes of given set to this set.
+     */
+    void addAll(@NotNull final ChangeSet changes) {
+        for (Map.Entry<Class<? extends Model>, Set<Long>> entry : changes.mChanges.entrySet()) {
+            add(entry.getKey(), toArray(entry.getValue()));
+        }
+    }
+
+    boolean isEmpty() {
+        return mChanges.isEmpty();
+    }
+
+    /**
+     * Returns the changed tables, in order of their first change.
+     */
+    @NotNull
+    Set<Class<? extends Model>> getTables() {
+        return mChanges.keySet();
+    }
+
+    /**
+     * Returns the ids of the changed rows of given table, or {@code null} if they are unknown.
+     */
+    @Nullable
+    long[] getIds(@NotNull final Class<? extends Model> table) {
+        return toArray(mChanges.get(table));
+    }
+
+    @Nullable
+    private static long[] toArray(@Nullable final Set<Long> rows) {
+        if (rows == null) {
+            return null;
+        }
+
+        long[] ids = new long[rows.size()];
+        int i = 0;
+        for (Long id : rows) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+}
@@ -18,21 +18,40 @@
 package com.nhaarman.ellie;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import com.nhaarman.ellie.internal.AdapterHolder;
 import com.nhaarman.ellie.internal.DatabaseHelper;
 import com.nhaarman.ellie.internal.ModelAdapter;
+import com.nhaarman.ellie.internal.ReadConnectionPool;
 import com.nhaarman.ellie.internal.RepositoryHolder;
+import com.nhaarman.ellie.query.QueryCache;
+import com.nhaarman.ellie.query.ResultQueryBase;
+import com.nhaarman.ellie.util.LongCache;
+import com.nhaarman.ellie.util.LongLruCache;
+import com.nhaarman.ellie.util.MemoryBudget;
+import com.nhaarman.ellie.util.ReferenceLongCache;
+import com.nhaarman.ellie.util.StripedLongLruCache;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The main class used in Ellie.
@@ -47,6 +66,16 @@ public final class Ellie {
      */
     public static final int DEFAULT_CACHE_SIZE = 1024;
 
+    /**
+     * The maximum number of query results that are cached by the {@link QueryCache}.
+     */
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 64;
+
+    /**
+     * The maximum number of host parameters in a single SQLite statement.
+     */
+    static final int MAX_SQL_VARIABLES = 999;
+
     private static final String TAG = "Ellie";
 
     @NotNull
@@ -84,6 +113,29 @@ public final class Ellie {
         }
     }
 
+    /**
+     * Controls how entities are retained after they have been evicted from the entity cache.
+     */
+    public enum CacheReferenceType {
+
+        /**
+         * Evicted entities are not retained.
+         */
+        NONE,
+
+        /**
+         * Evicted entities are retained using weak references,
+         * so they are reused for as long as they are reachable elsewhere.
+         */
+        WEAK,
+
+        /**
+         * Evicted entities are retained using soft references,
+         * so they are reused until the garbage collector needs the memory.
+         */
+        SOFT
+    }
+
     /**
      * The {@link AdapterHolder} instance that is instantiated to access the {@link ModelAdapter}s, {@link TypeAdapter}s, and {@link BaseMigration}s.
      * This value is {@code null} until {@link #init(Context, String, int, int, LogLevel)} is successfully called.
@@ -105,10 +157,82 @@ public final class Ellie {
     @Nullable
     private SQLiteDatabase mSQLiteDatabase;
 
+    /**
+     * The estimated number of threads concurrently accessing the entity caches.
+     */
+    private int mCacheConcurrencyLevel = 1;
+
+    /**
+     * Controls how evicted entities are retained by the entity caches.
+     */
+    @NotNull
+    private CacheReferenceType mCacheReferenceType = CacheReferenceType.NONE;
+
+    /**
+     * The memory budget shared by the entity caches, or {@code null} if the caches are limited by entry count.
+     */
+    @Nullable
+    private MemoryBudget mCacheMemoryBudget;
+
+    /**
+     * The executor that reports cache statistics to the {@link CacheStatsListener}.
+     * This value is {@code null} until a listener is set.
+     */
+    @Nullable
+    private ScheduledExecutorService mCacheStatsExecutor;
+
+    /**
+     * The scheduled reporting task, or {@code null} if there is no {@link CacheStatsListener}.
+     */
+    @Nullable
+    private ScheduledFuture<?> mCacheStatsReport;
+
+    /**
+     * Caches the results of queries that are marked as cached.
+     */
+    @NotNull
+    private final QueryCache mQueryCache = new QueryCache(DEFAULT_QUERY_CACHE_SIZE);
+
+    /**
+     * Set while entities are being prefetched on the current thread, to keep the prefetched entities from prefetching their references in turn.
+     */
+    @NotNull
+    private final ThreadLocal<Boolean> mPrefetching = new ThreadLocal<>();
+
+    /**
+     * Delivers the notifications of {@link #notifyChange(Class)} and {@link #notifyChange(Class, long...)}.
+     */
+    @NotNull
+    private final ChangeDispatcher mChangeDispatcher = new ChangeDispatcher();
+
+    /**
+     * The transaction of each thread, or {@code null} if the thread is not in a transaction started through Ellie.
+     */
+    @NotNull
+    private final ThreadLocal<Transaction> mTransactions = new ThreadLocal<>();
+
+    /**
+     * The number of threads in a transaction started through Ellie, checked before looking up {@link #mTransactions}:
+     * the entity caches are accessed far more often than transactions are open.
+     */
+    @NotNull
+    private final AtomicInteger mOpenTransactions = new AtomicInteger();
+
+    /**
+     * The number of read-only connections, or {@code 0} if write-ahead logging is disabled.
+     */
+    private int mReadConnections;
+
+    /**
+     * The read-only connections, or {@code null} if write-ahead logging is disabled.
+     */
+    @Nullable
+    private ReadConnectionPool mReadConnectionPool;
+
     /**
      * Indicates whether we're fully initialized.
      */
-    private boolean mInitialized;
+    private volatile boolean mInitialized;
 
     /**
      * Returns the main instance of {@code Ellie} that is used in classes when not injected.
@@ -136,6 +260,102 @@ public final class Ellie {
         }
     }
 
+    /**
+     * Sets the estimated number of threads that concurrently load and save models.
+     * When this value is larger than 1, each {@link ModelRepository} uses a lock-striped entity cache,
+     * so threads accessing different entities do not contend for the same lock.
+     * Must be called before {@link #init(Context, String, int, int, LogLevel)}.
+     *
+     * @param concurrencyLevel The concurrency level. Defaults to 1.
+     *
+     * @throws IllegalStateException if Ellie has already been initialized.
+     */
+    public void setCacheConcurrencyLevel(final int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+        if (mInitialized) {
+            throw new IllegalStateException("The cache concurrency level must be set before calling Ellie#init(...).");
+        }
+
+        mCacheConcurrencyLevel = concurrencyLevel;
+    }
+
+    /**
+     * Sets how entities are retained after they have been evicted from the entity cache of their {@link ModelRepository}.
+     * When set to {@link CacheReferenceType#WEAK} or {@link CacheReferenceType#SOFT}, an entity that is still
+     * reachable is reused when its row is loaded again, instead of a new instance being created.
+     * Must be called before {@link #init(Context, String, int, int, LogLevel)}.
+     *
+     * @param referenceType The reference type. Defaults to {@link CacheReferenceType#NONE}.
+     *
+     * @throws IllegalStateException if Ellie has already been initialized.
+     */
+    public void setCacheReferenceType(@NotNull final CacheReferenceType referenceType) {
+        Objects.requireNonNull(referenceType);
+
+        if (mInitialized) {
+            throw new IllegalStateException("The cache reference type must be set before calling Ellie#init(...).");
+        }
+
+        mCacheReferenceType = referenceType;
+    }
+
+    /**
+     * Limits the entity caches of all {@link ModelRepository}s by the estimated heap size of the cached entities,
+     * instead of by entry count. The entity caches share given budget: when it is exceeded, the cache that occupies
+     * the most memory evicts its least recently used entities first.
+     * When a budget is set, the cache size passed to {@link #init(Context, String, int, int, LogLevel)} is ignored.
+     * Must be called before {@link #init(Context, String, int, int, LogLevel)}.
+     *
+     * @param maxBytes The maximum estimated size of all cached entities, in bytes.
+     *
+     * @throws IllegalStateException if Ellie has already been initialized.
+     */
+    public void setCacheMemoryBudget(final long maxBytes) {
+        if (mInitialized) {
+            throw new IllegalStateException("The cache memory budget must be set before calling Ellie#init(...).");
+        }
+
+        mCacheMemoryBudget = new MemoryBudget(maxBytes);
+    }
+
+    /**
+     * Opens the database in write-ahead logging mode, with given number of read-only connections next to the single
+     * writable connection. Queries built with {@link com.nhaarman.ellie.query.Select} and {@link ModelRepository#find(long)}
+     * run on the read-only connections, so they do not wait for writes and writes do not wait for them.
+     * <p/>
+     * Consistency guarantees:
+     * <ul>
+     * <li>A query sees the database as it was at the last commit before the query started.
+     * It never sees the uncommitted changes of another thread.</li>
+     * <li>Once a write or transaction has committed, queries that start afterwards, on any thread, see it.</li>
+     * <li>Inside a transaction started through Ellie, or through {@link SQLiteDatabase#beginTransaction()} on
+     * {@link #getDatabase()}, queries run on the writable connection and see the changes of the transaction.</li>
+     * <li>Separate queries may see different commits. Use {@link #runInReadSnapshot(java.util.concurrent.Callable)}
+     * for a group of queries that must see the same state.</li>
+     * <li>A {@link com.nhaarman.ellie.query.LazyList} re-runs its query when it moves to another cursor window,
+     * so a large result can span commits, as it does without write-ahead logging.</li>
+     * </ul>
+     * The read-only connections are held open next to the writable connection, and read snapshots keep one of them
+     * for their duration. Call {@link #close()} to close them.
+     * Must be called before {@link #init(Context, String, int, int, LogLevel)}.
+     *
+     * @param readConnections The number of read-only connections.
+     *
+     * @throws IllegalStateException if Ellie has already been initialized.
+     */
+    public void enableWriteAheadLogging(final int readConnections) {
+        if (readConnections <= 0) {
+            throw new IllegalArgumentException("readConnections <= 0");
+        }
+        if (mInitialized) {
+            throw new IllegalStateException("Write-ahead logging must be enabled before calling Ellie#init(...).");
+        }
+
+        mReadConnections = readConnections;
+    }
+
     /**
      * Initialize the database. Must be called before interacting with the database.
      *
@@ -194,6 +414,9 @@ public final class Ellie {
 
         mAdapterHolder = instantiateAdapterHolder();
         mSQLiteDatabase = createSQLiteDatabase(context, name, version, mAdapterHolder, logLevel);
+        if (mReadConnections > 0) {
+            mReadConnectionPool = new ReadConnectionPool(mSQLiteDatabase.getPath(), mReadConnections);
+        }
         mRepositoryHolder = instantiateRepositoryHolder(mSQLiteDatabase, cacheSize);
 
         mInitialized = true;
@@ -230,6 +453,7 @@ public final class Ellie {
     private SQLiteDatabase createSQLiteDatabase(@NotNull final Context context, @NotNull final String name, final int version,
                                                 @NotNull final AdapterHolder adapterHolder, @NotNull final LogLevel logLevel) {
         DatabaseHelper databaseHelper = new DatabaseHelper(context.getApplicationContext(), name, version, adapterHolder, logLevel);
+        databaseHelper.setWriteAheadLoggingEnabled(mReadConnections > 0);
         return databaseHelper.getWritableDatabase();
     }
 
@@ -252,6 +476,46 @@ public final class Ellie {
         }
     }
 
+    /**
+     * Closes the database and the read-only connections. Waits until the read snapshots of other threads have ended.
+     * Stops reporting cache statistics, and delivers the change notifications that are pending in the debounce window.
+     * Afterwards, Ellie must be initialized again before interacting with the database.
+     *
+     * @throws IllegalStateException if the current thread is in a transaction.
+     */
+    public synchronized void close() {
+        if (inTransaction()) {
+            throw new IllegalStateException("Cannot close Ellie in a transaction.");
+        }
+
+        if (mCacheStatsReport != null) {
+            mCacheStatsReport.cancel(false);
+            mCacheStatsReport = null;
+        }
+        if (mCacheStatsExecutor != null) {
+            mCacheStatsExecutor.shutdown();
+            mCacheStatsExecutor = null;
+        }
+        mChangeDispatcher.close();
+
+        if (!mInitialized) {
+            return;
+        }
+
+        mInitialized = false;
+        try {
+            if (mReadConnectionPool != null) {
+                mReadConnectionPool.close();
+                mReadConnectionPool = null;
+            }
+        } finally {
+            mRepositoryHolder = null;
+            mSQLiteDatabase.close();
+            mSQLiteDatabase = null;
+            mQueryCache.evictAll();
+        }
+    }
+
     /**
      * Returns the {@link SQLiteDatabase} instance that is used.
      *
@@ -266,6 +530,489 @@ public final class Ellie {
         return mSQLiteDatabase;
     }
 
+    /**
+     * Returns the {@link SQLiteDatabase} to run a query on.
+     * This is one of the read-only connections when write-ahead logging is enabled. Inside a transaction, it is the
+     * connection of the transaction: the writable connection, or the read-only connection held by a read snapshot.
+     *
+     * @return The {@code SQLiteDatabase} instance.
+     *
+     * @see #enableWriteAheadLogging(int)
+     */
+    @NotNull
+    public SQLiteDatabase getReadableDatabase() {
+        SQLiteDatabase database = getDatabase();
+        if (mReadConnectionPool == null) {
+            return database;
+        }
+
+        Transaction transaction = getCurrentTransaction();
+        if (transaction != null) {
+            return transaction.getDatabase();
+        }
+        if (database.inTransaction()) {
+            return database;
+        }
+
+        /* All read-only connections may be held by read snapshots. */
+        SQLiteDatabase connection = mReadConnectionPool.next();
+        return connection == null ? database : connection;
+    }
+
+    /**
+     * Returns the {@link QueryCache} that holds the results of cached queries.
+     *
+     * @return The {@code QueryCache}.
+     */
+    @NotNull
+    public QueryCache getQueryCache() {
+        return mQueryCache;
+    }
+
+    /**
+     * Notifies Ellie that the table of given model type has been written to.
+     * This is done automatically for writes through {@link Model}s, the query builders and the {@link EllieProvider};
+     * call this method after modifying the database directly.
+     * Inside a transaction started by {@link #beginTransaction()}, the {@link TableChangeListener}s are notified on commit.
+     * The {@link RowChangeListener}s receive {@code null} ids, as the changed rows are unknown;
+     * use {@link #notifyChange(Class, long...)} when they are known.
+     *
+     * @param cls The type class of the model of which the table has changed.
+     *
+     * @throws IllegalStateException if the current thread is in a read snapshot.
+     */
+    public void notifyChange(@NotNull final Class<? extends Model> cls) {
+        notifyRowsChanged(cls, null);
+    }
+
+    /**
+     * Like {@link #notifyChange(Class)}, for the rows with given ids.
+     * The {@link RowChangeListener}s receive the ids of the changed rows, merged per transaction.
+     *
+     * @param cls The type class of the model of which the table has changed.
+     * @param ids The ids of the changed rows.
+     *
+     * @throws IllegalStateException if the current thread is in a read snapshot.
+     */
+    public void notifyChange(@NotNull final Class<? extends Model> cls, @NotNull final long... ids) {
+        notifyRowsChanged(cls, Objects.requireNonNull(ids));
+    }
+
+    private void notifyRowsChanged(@NotNull final Class<? extends Model> cls, @Nullable final long[] ids) {
+        mQueryCache.notifyChange(cls);
+
+        Transaction transaction = getCurrentTransaction();
+        if (transaction == null) {
+            mChangeDispatcher.dispatch(cls, ids);
+            return;
+        }
+
+        if (transaction.isReadOnly()) {
+            throw new IllegalStateException("Cannot write to " + cls.getSimpleName() + " in a read snapshot.");
+        }
+        transaction.peek().mChanges.add(cls, ids);
+    }
+
+    /**
+     * Adds a listener that is notified whenever a table is written to.
+     *
+     * @param listener The listener.
+     */
+    public void addTableChangeListener(@NotNull final TableChangeListener listener) {
+        mChangeDispatcher.addListener(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Removes a listener that was added by {@link #addTableChangeListener(TableChangeListener)}.
+     *
+     * @param listener The listener.
+     */
+    public void removeTableChangeListener(@NotNull final TableChangeListener listener) {
+        mChangeDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Adds a listener that is notified with the ids of the changed rows whenever a table is written to.
+     *
+     * @param listener The listener.
+     */
+    public void addRowChangeListener(@NotNull final RowChangeListener listener) {
+        mChangeDispatcher.addRowListener(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Removes a listener that was added by {@link #addRowChangeListener(RowChangeListener)}.
+     *
+     * @param listener The listener.
+     */
+    public void removeRowChangeListener(@NotNull final RowChangeListener listener) {
+        mChangeDispatcher.removeRowListener(listener);
+    }
+
+    /**
+     * Sets a window in which table change notifications are merged, for bursts of separate writes or transactions.
+     * Merged notifications are delivered on a background thread, at most one window after the first change.
+     * The {@link QueryCache} is always invalidated right away.
+     *
+     * @param window The length of the window, or {@code 0} to deliver notifications right away.
+     * @param unit   The unit of {@code window}.
+     */
+    public void setChangeDebounce(final long window, @NotNull final TimeUnit unit) {
+        mChangeDispatcher.setDebounce(window, Objects.requireNonNull(unit));
+    }
+
+    /**
+     * Executes given callable in a transaction. The transaction commits when the callable returns,
+     * and rolls back when it throws.
+     * <p/>
+     * Transactions may be nested: a nested transaction is a savepoint, so when it rolls back, only its own changes
+     * are undone and the enclosing transaction can continue.
+     * Entities that are cached by the {@link ModelRepository}s during the transaction are only visible to the current
+     * thread, and are added to the caches once the outermost transaction has committed. Likewise, the
+     * {@link TableChangeListener}s are notified once per table on commit, and not at all on rollback.
+     *
+     * @param callable The callable to execute.
+     * @param <V>      The result type.
+     *
+     * @return The result of the callable.
+     *
+     * @throws RuntimeException wrapping a checked exception thrown by the callable. Unchecked exceptions are rethrown as is.
+     */
+    public <V> V runInTransaction(@NotNull final Callable<V> callable) {
+        return runInTransaction(callable, false);
+    }
+
+    /**
+     * Executes given callable in a read snapshot: a transaction in which all queries see the same state of the database.
+     * Writes are not allowed, and fail with an {@link IllegalStateException}.
+     * <p/>
+     * When write-ahead logging is enabled, the snapshot holds one of the read-only connections, on which it runs a
+     * deferred transaction: other threads keep reading and writing while the snapshot is open. When all read-only
+     * connections are held, this method waits for one to be released.
+     * Without write-ahead logging, there is a single connection, which the snapshot holds until it ends.
+     *
+     * @param callable The callable to execute.
+     * @param <V>      The result type.
+     *
+     * @return The result of the callable.
+     *
+     * @throws RuntimeException wrapping a checked exception thrown by the callable. Unchecked exceptions are rethrown as is.
+     * @see #runInTransaction(Callable)
+     */
+    public <V> V runInReadSnapshot(@NotNull final Callable<V> callable) {
+        return runInTransaction(callable, true);
+    }
+
+    private <V> V runInTransaction(@NotNull final Callable<V> callable, final boolean readOnly) {
+        beginTransaction(readOnly);
+        try {
+            V result = callable.call();
+            setTransactionSuccessful();
+            return result;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            endTransaction();
+        }
+    }
+
+    /**
+     * Begins a transaction, like {@link SQLiteDatabase#beginTransaction()}.
+     * When the current thread is already in a transaction, a savepoint is created instead.
+     * A transaction cannot be begun inside a read snapshot, which does not allow writes.
+     * <p/>
+     * Use as follows:
+     * <pre>
+     *   ellie.beginTransaction();
+     *   try {
+     *     ...
+     *     ellie.setTransactionSuccessful();
+     *   } finally {
+     *     ellie.endTransaction();
+     *   }
+     * </pre>
+     *
+     * @throws IllegalStateException if the current thread is in a read snapshot.
+     * @see #runInTransaction(Callable)
+     */
+    public void beginTransaction() {
+        beginTransaction(false);
+    }
+
+    private void beginTransaction(final boolean readOnly) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction == null) {
+            transaction = readOnly ? beginReadSnapshot() : beginWriteTransaction();
+            mOpenTransactions.incrementAndGet();
+            mTransactions.set(transaction);
+        } else {
+            if (!readOnly && transaction.isReadOnly()) {
+                throw new IllegalStateException("Cannot begin a transaction in a read snapshot.");
+            }
+            transaction.getDatabase().execSQL("SAVEPOINT " + getSavepointName(transaction.getDepth()));
+        }
+        transaction.push(readOnly);
+    }
+
+    @NotNull
+    private Transaction beginWriteTransaction() {
+        SQLiteDatabase database = getDatabase();
+        database.beginTransaction();
+        return new Transaction(database, false);
+    }
+
+    @NotNull
+    private Transaction beginReadSnapshot() {
+        SQLiteDatabase database = getDatabase();
+        if (mReadConnectionPool == null || database.inTransaction()) {
+            database.beginTransactionNonExclusive();
+            return new Transaction(database, false);
+        }
+
+        SQLiteDatabase connection = mReadConnectionPool.acquire();
+        try {
+            /*
+             * A deferred transaction takes no lock until its first read, and never blocks the writer.
+             * The leading comment keeps SQLiteDatabase from turning the statement into BEGIN EXCLUSIVE.
+             */
+            connection.execSQL("/* */BEGIN");
+        } catch (RuntimeException e) {
+            mReadConnectionPool.release(connection);
+            throw e;
+        }
+        return new Transaction(connection, true);
+    }
+
+    /**
+     * Marks the current transaction as successful, like {@link SQLiteDatabase#setTransactionSuccessful()}.
+     */
+    public void setTransactionSuccessful() {
+        Transaction transaction = getTransaction();
+        if (transaction.peek().mSuccessful) {
+            throw new IllegalStateException("The transaction is already marked successful.");
+        }
+
+        transaction.peek().mSuccessful = true;
+        if (transaction.getDepth() == 1 && !transaction.isReadConnection()) {
+            transaction.getDatabase().setTransactionSuccessful();
+        }
+    }
+
+    /**
+     * Ends the current transaction, like {@link SQLiteDatabase#endTransaction()}.
+     * A savepoint is released when it was marked successful, and rolled back otherwise.
+     * When the outermost transaction commits, the staged cache operations are applied and the change notifications are delivered.
+     */
+    public void endTransaction() {
+        Transaction transaction = getTransaction();
+        Transaction.Level level = transaction.pop();
+
+        if (transaction.getDepth() == 0) {
+            mTransactions.remove();
+            mOpenTransactions.decrementAndGet();
+            try {
+                if (transaction.isReadConnection()) {
+                    endReadSnapshot(transaction.getDatabase());
+                } else {
+                    transaction.getDatabase().endTransaction();
+                }
+            } finally {
+                /* Results cached during the transaction may contain rows that were rolled back, or miss committed ones. */
+                for (Class<? extends Model> table : level.mChanges.getTables()) {
+                    mQueryCache.notifyChange(table);
+                }
+            }
+
+            if (level.mSuccessful) {
+                level.apply();
+                if (!level.mChanges.isEmpty()) {
+                    mChangeDispatcher.dispatch(level.mChanges);
+                }
+            }
+            return;
+        }
+
+        SQLiteDatabase database = transaction.getDatabase();
+        String savepoint = getSavepointName(transaction.getDepth());
+        if (level.mSuccessful) {
+            database.execSQL("RELEASE " + savepoint);
+            level.mergeInto(transaction.peek());
+        } else {
+            /* A leading comment keeps SQLiteDatabase from treating the statement as a rollback of the whole transaction. */
+            database.execSQL("/* */ROLLBACK TO " + savepoint);
+            database.execSQL("RELEASE " + savepoint);
+            for (Class<? extends Model> table : level.mChanges.getTables()) {
+                mQueryCache.notifyChange(table);
+            }
+        }
+    }
+
+    /**
+     * Ends a read snapshot on a read-only connection, and releases the connection.
+     */
+    private void endReadSnapshot(@NotNull final SQLiteDatabase connection) {
+        try {
+            connection.execSQL("/* */COMMIT");
+        } finally {
+            mReadConnectionPool.release(connection);
+        }
+    }
+
+    /**
+     * Returns whether the current thread is in a transaction that was started through Ellie.
+     */
+    public boolean inTransaction() {
+        return getCurrentTransaction() != null;
+    }
+
+    /**
+     * Returns whether the current thread is in a read snapshot, in which writes are not allowed.
+     *
+     * @see #runInReadSnapshot(Callable)
+     */
+    public boolean inReadSnapshot() {
+        Transaction transaction = getCurrentTransaction();
+        return transaction != null && transaction.isReadOnly();
+    }
+
+    /**
+     * Returns the transaction of the current thread, or {@code null} if there is none.
+     * The thread local is only looked up while any thread is in a transaction.
+     */
+    @Nullable
+    private Transaction getCurrentTransaction() {
+        return mOpenTransactions.get() == 0 ? null : mTransactions.get();
+    }
+
+    @NotNull
+    private Transaction getTransaction() {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction == null) {
+            throw new IllegalStateException("No transaction in progress.");
+        }
+        return transaction;
+    }
+
+    @NotNull
+    private static String getSavepointName(final int depth) {
+        return "ellie_" + depth;
+    }
+
+    /**
+     * Runs given query on {@link #getReadableDatabase()}, binding given id as its only argument.
+     * The id is bound as a long, so it compares to an integer primary key without conversion.
+     *
+     * @param sql The SQL query, with a single parameter.
+     * @param id  The id to bind.
+     *
+     * @return The resulting {@link Cursor}.
+     */
+    @NotNull
+    Cursor queryById(@NotNull final String sql, final long id) {
+        return getReadableDatabase().rawQueryWithFactory(new IdCursorFactory(id), sql, null, null);
+    }
+
+    /**
+     * Prepares the current thread for a write through the compiled statements of a {@link ModelRepository}.
+     * Unless the thread is already in a transaction, a transaction is begun, so the thread holds the writable connection
+     * before it locks the statements of the repository. A thread that holds that lock then never waits for a thread
+     * that holds the connection.
+     *
+     * @param cls The type class of the model that is written.
+     *
+     * @return Whether a transaction was begun, which must be passed to {@link #endWrite(boolean)}.
+     *
+     * @throws IllegalStateException if the current thread is in a read snapshot.
+     */
+    boolean beginWrite(@NotNull final Class<? extends Model> cls) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction != null) {
+            if (transaction.isReadOnly()) {
+                throw new IllegalStateException("Cannot write to " + cls.getSimpleName() + " in a read snapshot.");
+            }
+            return false;
+        }
+
+        SQLiteDatabase database = getDatabase();
+        if (database.inTransaction()) {
+            return false;
+        }
+        database.beginTransactionNonExclusive();
+        return true;
+    }
+
+    /**
+     * Ends a write that was started by {@link #beginWrite(Class)}.
+     * A single statement that failed has no effect, so the transaction is committed either way.
+     *
+     * @param began The result of {@code beginWrite}.
+     */
+    void endWrite(final boolean began) {
+        if (began) {
+            SQLiteDatabase database = getDatabase();
+            database.setTransactionSuccessful();
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the cached entity with given id, taking the cache operations staged by the transaction of the current thread into account.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    <T extends Model> T getEntity(@NotNull final ModelRepository<T> repository, @NotNull final LongCache<T> cache, final long id) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction != null) {
+            Object staged = transaction.getStaged(repository, id);
+            if (staged == Transaction.REMOVED) {
+                return null;
+            }
+            if (staged != Transaction.NOT_STAGED) {
+                return (T) staged;
+            }
+        }
+        return cache.get(id);
+    }
+
+    /**
+     * Caches given entity, or stages it until the transaction of the current thread commits.
+     */
+    <T extends Model> void putEntity(@NotNull final ModelRepository<T> repository, @NotNull final LongCache<T> cache, final long id,
+                                     @NotNull final T entity) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction == null) {
+            cache.put(id, entity);
+        } else {
+            transaction.peek().stage(repository, id, entity);
+        }
+    }
+
+    /**
+     * Removes the entity with given id from the cache, or stages its removal until the transaction of the current thread commits.
+     */
+    void removeEntity(@NotNull final ModelRepository<?> repository, @NotNull final LongCache<?> cache, final long id) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction == null) {
+            cache.remove(id);
+        } else {
+            transaction.peek().stage(repository, id, Transaction.REMOVED);
+        }
+    }
+
+    /**
+     * Clears the cache, or stages the clear until the transaction of the current thread commits.
+     */
+    void removeAllEntities(@NotNull final ModelRepository<?> repository, @NotNull final LongCache<?> cache) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction == null) {
+            cache.evictAll();
+        } else {
+            transaction.peek().stageClear(repository);
+        }
+    }
+
     /**
      * Returns the table name for the model represented by given type class.
      *
@@ -305,6 +1052,25 @@ public final class Ellie {
         return mRepositoryHolder.getModelRepository(cls);
     }
 
+    /**
+     * Saves given entities in a single transaction.
+     * This is considerably faster than calling {@link Model#save()} for each entity.
+     *
+     * @param cls      The class of the entities.
+     * @param entities The entities to insert or update.
+     * @param <T>      The type of the class extending {@link Model}.
+     *
+     * @see ModelRepository#saveAll(Collection)
+     */
+    public <T extends Model> void saveAll(@NotNull final Class<T> cls, @NotNull final Collection<T> entities) {
+        ModelRepository<T> repository = getModelRepository(cls);
+        if (repository == null) {
+            throw new IllegalArgumentException("No ModelRepository for " + cls.getName());
+        }
+
+        repository.saveAll(entities);
+    }
+
     /**
      * Returns all instantiated {@link ModelAdapter}s.
      *
@@ -337,4 +1103,256 @@ public final class Ellie {
 
         return (TypeAdapter<D, S>) mAdapterHolder.getTypeAdapter(cls);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates the entity cache for a {@link ModelRepository}.
+     *
+     * @param repository The {@code ModelRepository}, used to estimate the size of the entities when a memory budget is set.
+     * @param maxSize    The maximum number of entities in the cache.
+     * @param <T>        The type of the class extending {@link Model}.
+     *
+     * @return The entity cache.
+     */
+    @NotNull
+    <T extends Model> LongCache<T> createEntityCache(@NotNull final ModelRepository<T> repository, final int maxSize) {
+        final MemoryBudget budget = mCacheMemoryBudget;
+
+        LongCache<T> cache;
+        if (budget == null) {
+            if (mCacheConcurrencyLevel > 1) {
+                cache = new StripedLongLruCache<>(maxSize, mCacheConcurrencyLevel);
+            } else {
+                cache = new LongLruCache<>(maxSize);
+            }
+        } else {
+            int maxBytes = (int) Math.min(budget.maxSize(), Integer.MAX_VALUE);
+            if (mCacheConcurrencyLevel > 1) {
+                cache = new StripedLongLruCache<T>(maxBytes, mCacheConcurrencyLevel, budget) {
+                    @Override
+                    protected int sizeOf(final long key, final T value) {
+                        return repository.sizeOf(value);
+                    }
+                };
+            } else {
+                cache = new LongLruCache<T>(maxBytes, budget) {
+                    @Override
+                    protected int sizeOf(final long key, final T value) {
+                        return repository.sizeOf(value);
+                    }
+                };
+            }
+        }
+
+        switch (mCacheReferenceType) {
+            case WEAK:
+                return new ReferenceLongCache<>(cache, false, mCacheConcurrencyLevel);
+            case SOFT:
+                return new ReferenceLongCache<>(cache, true, mCacheConcurrencyLevel);
+            default:
+                return cache;
+        }
+    }
+
+    /**
+     * Loads the entities referenced in given column of all rows of given cursor into the cache of given {@link ModelRepository}.
+     * The position of the cursor is not restored.
+     * Does nothing when called while prefetching, so references are prefetched one level deep.
+     *
+     * @param repository  The {@code ModelRepository} of the referenced entities.
+     * @param cursor      The cursor.
+     * @param columnIndex The index of the column holding the ids of the referenced entities.
+     */
+    void prefetchReferences(@NotNull final ModelRepository<?> repository, @NotNull final Cursor cursor, final int columnIndex) {
+        if (mPrefetching.get() != null || !cursor.moveToFirst()) {
+            return;
+        }
+
+        long[] ids = new long[cursor.getCount()];
+        int count = 0;
+        do {
+            if (!cursor.isNull(columnIndex)) {
+                ids[count++] = cursor.getLong(columnIndex);
+            }
+        }
+        while (cursor.moveToNext());
+
+        repository.prefetchEntities(Arrays.copyOf(ids, count));
+    }
+
+    /**
+     * Loads the entities with given ids that are not cached yet into the cache of given {@link ModelRepository},
+     * using as few queries as SQLite's host parameter limit allows.
+     *
+     * @param repository The {@code ModelRepository}.
+     * @param cls        The class of the entities.
+     * @param ids        The ids of the entities. May contain duplicates.
+     * @param <T>        The type of the class extending {@link Model}.
+     */
+    <T extends Model> void prefetchEntities(@NotNull final ModelRepository<T> repository, @NotNull final Class<T> cls, @NotNull final long[] ids) {
+        long[] sortedIds = sortUnique(ids);
+
+        mPrefetching.set(Boolean.TRUE);
+        try {
+            findEntities(repository, cls, sortedIds, new Model[sortedIds.length], true);
+        } finally {
+            mPrefetching.remove();
+        }
+    }
+
+    /**
+     * Finds the entities with given ids, using as few queries as SQLite's host parameter limit allows.
+     *
+     * @param repository The {@code ModelRepository}.
+     * @param cls        The class of the entities.
+     * @param ids        The ids of the entities.
+     * @param useCache   Whether to serve the entities from the cache of the {@code ModelRepository} when possible.
+     * @param <T>        The type of the class extending {@link Model}.
+     *
+     * @return The entities in the order of given ids. Ids without a matching row are skipped.
+     */
+    @NotNull
+    <T extends Model> List<T> findAll(@NotNull final ModelRepository<T> repository, @NotNull final Class<T> cls, @NotNull final long[] ids,
+                                      final boolean useCache) {
+        long[] sortedIds = sortUnique(ids);
+        Model[] entities = new Model[sortedIds.length];
+        findEntities(repository, cls, sortedIds, entities, useCache);
+
+        List<T> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T entity = cls.cast(entities[Arrays.binarySearch(sortedIds, id)]);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the entities with given ids, and stores them in given array at the index of their id.
+     *
+     * @param sortedIds The ids of the entities, sorted and without duplicates.
+     * @param entities  The array to store the entities in, of the same length as {@code sortedIds}.
+     * @param useCache  Whether to serve the entities from the cache of the {@code ModelRepository} when possible.
+     */
+    private <T extends Model> void findEntities(@NotNull final ModelRepository<T> repository, @NotNull final Class<T> cls,
+                                                @NotNull final long[] sortedIds, @NotNull final Model[] entities, final boolean useCache) {
+        long[] missingIds = new long[sortedIds.length];
+        int count = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (useCache) {
+                entities[i] = repository.getEntity(sortedIds[i]);
+            }
+            if (entities[i] == null) {
+                missingIds[count++] = sortedIds[i];
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        String sqlPrefix = "SELECT * FROM " + getTableName(cls) + " WHERE " + Model.COLUMN_ID + " IN (";
+        for (int start = 0; start < count; start += MAX_SQL_VARIABLES) {
+            int length = Math.min(MAX_SQL_VARIABLES, count - start);
+
+            StringBuilder sql = new StringBuilder(sqlPrefix.length() + length * 2 + 1).append(sqlPrefix);
+            Object[] args = new Object[length];
+            for (int i = 0; i < length; i++) {
+                sql.append(i == 0 ? "?" : ",?");
+                args[i] = missingIds[start + i];
+            }
+            sql.append(')');
+
+            for (T entity : ResultQueryBase.rawQuery(this, cls, sql.toString(), args)) {
+                entities[Arrays.binarySearch(sortedIds, entity.getId())] = entity;
+            }
+        }
+    }
+
+    /**
+     * Returns a sorted copy of given ids, without duplicates.
+     */
+    @NotNull
+    private static long[] sortUnique(@NotNull final long[] ids) {
+        long[] result = ids.clone();
+        Arrays.sort(result);
+
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[count++] = result[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns a snapshot of the entity cache statistics of every {@link ModelRepository}.
+     * Use these to determine the cache size to pass to {@link #init(Context, String, int, int, LogLevel)}.
+     *
+     * @return The list of {@link CacheStats}, one per {@code ModelRepository}.
+     */
+    @NotNull
+    public List<CacheStats> getCacheStats() {
+        if (mRepositoryHolder == null) {
+            throw new IllegalStateException("Ellie hasn't been initialized yet. Did you call Ellie#init(...)?");
+        }
+
+        List<CacheStats> result = new ArrayList<>();
+        for (ModelRepository<?> modelRepository : mRepositoryHolder.getModelRepositories()) {
+            result.add(modelRepository.getCacheStats());
+        }
+        return result;
+    }
+
+    /**
+     * Sets a {@link CacheStatsListener} that periodically receives the result of {@link #getCacheStats()}.
+     * The listener is called on a background thread, and only once Ellie has been initialized.
+     * Replaces any previously set listener.
+     *
+     * @param listener The listener, or {@code null} to stop reporting.
+     * @param period   The time between reports.
+     * @param unit     The unit of {@code period}.
+     */
+    public synchronized void setCacheStatsListener(@Nullable final CacheStatsListener listener, final long period, @NotNull final TimeUnit unit) {
+        Objects.requireNonNull(unit);
+
+        if (mCacheStatsReport != null) {
+            mCacheStatsReport.cancel(false);
+            mCacheStatsReport = null;
+        }
+
+        if (listener == null) {
+            return;
+        }
+
+        if (period <= 0) {
+            throw new IllegalArgumentException("period <= 0");
+        }
+
+        if (mCacheStatsExecutor == null) {
+            mCacheStatsExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NotNull final Runnable runnable) {
+                            Thread thread = new Thread(runnable, "Ellie cache stats");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+            );
+        }
+
+        mCacheStatsReport = mCacheStatsExecutor.scheduleAtFixedRate(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mInitialized) {
+                            listener.onCacheStats(getCacheStats());
+                        }
+                    }
+                },
+                period, period, unit
+        );
+    }
+}
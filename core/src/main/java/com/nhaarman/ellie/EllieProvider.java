@@ -18,7 +18,10 @@
 package com.nhaarman.ellie;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.net.Uri;
@@ -27,6 +30,10 @@ import android.util.SparseArray;
 import com.nhaarman.ellie.Ellie.LogLevel;
 import com.nhaarman.ellie.internal.ModelAdapter;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+
 /**
  * <p>
  * Default implementation of a <a href="https://developer.android.com/reference/android/content/ContentProvider.html">
@@ -135,6 +142,15 @@ public abstract class EllieProvider extends ContentProvider {
             i++;
         }
 
+        mEllie.addTableChangeListener(
+                new TableChangeListener() {
+                    @Override
+                    public void onTableChanged(@NotNull final Class<? extends Model> table) {
+                        getContext().getContentResolver().notifyChange(createUri(table, mEllie), null);
+                    }
+                }
+        );
+
         return true;
     }
 
@@ -175,7 +191,7 @@ public abstract class EllieProvider extends ContentProvider {
 
         if (id > 0) {
             Uri retUri = createUri(type, id, mEllie);
-            getContext().getContentResolver().notifyChange(uri, null);
+            mEllie.notifyChange(type, id);
             return retUri;
         }
 
@@ -184,34 +200,70 @@ public abstract class EllieProvider extends ContentProvider {
 
     @Override
     public int update(final Uri uri, final ContentValues contentValues, final String selection, final String[] selectionArgs) {
+        final Class<? extends Model> type = getModelType(uri);
         final int count = mEllie.getDatabase().update(
-                mEllie.getTableName(getModelType(uri)),
+                mEllie.getTableName(type),
                 contentValues,
                 selection,
                 selectionArgs
         );
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (count > 0) {
+            mEllie.notifyChange(type);
+        }
 
         return count;
     }
 
     @Override
     public int delete(final Uri uri, final String selection, final String[] selectionArgs) {
+        final Class<? extends Model> type = getModelType(uri);
         final int count = mEllie.getDatabase().delete(
-                mEllie.getTableName(getModelType(uri)),
+                mEllie.getTableName(type),
                 selection,
                 selectionArgs
         );
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (count > 0) {
+            mEllie.notifyChange(type);
+        }
 
         return count;
     }
 
+    /**
+     * Inserts the rows in a single transaction, so observers are notified once per table instead of once per row.
+     */
+    @Override
+    public int bulkInsert(final Uri uri, final ContentValues[] values) {
+        mEllie.beginTransaction();
+        try {
+            final int count = super.bulkInsert(uri, values);
+            mEllie.setTransactionSuccessful();
+            return count;
+        } finally {
+            mEllie.endTransaction();
+        }
+    }
+
+    /**
+     * Applies the operations in a single transaction, so observers are notified once per table instead of once per operation.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(final ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        mEllie.beginTransaction();
+        try {
+            final ContentProviderResult[] results = super.applyBatch(operations);
+            mEllie.setTransactionSuccessful();
+            return results;
+        } finally {
+            mEllie.endTransaction();
+        }
+    }
+
     @Override
     public Cursor query(final Uri uri, final String[] projection, final String selection, final String[] selectionArgs, final String sortOrder) {
-        final Cursor cursor = mEllie.getDatabase().query(
+        final Cursor cursor = mEllie.getReadableDatabase().query(
                 mEllie.getTableName(getModelType(uri)),
                 projection,
                 selection,
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * A {@link SQLiteDatabase.CursorFactory} that binds a single id as a long,
+ * where {@link SQLiteDatabase#rawQuery(String, String[])} would need it formatted into a string array and binds it as text.
+ */
+final class IdCursorFactory implements SQLiteDatabase.CursorFactory {
+
+    private final long mId;
+
+    IdCursorFactory(final long id) {
+        mId = id;
+    }
+
+    @Override
+    public Cursor newCursor(final SQLiteDatabase db, final SQLiteCursorDriver masterQuery, final String editTable, final SQLiteQuery query) {
+        query.bindLong(1, mId);
+        return new SQLiteCursor(masterQuery, editTable, query);
+    }
+}
@@ -119,7 +119,6 @@ public abstract class Model {
         if (result != -1) {
             mId = result;
             mRepository.putEntity(this);
-            notifyChange();
         }
 
         return result;
@@ -131,19 +130,9 @@ public abstract class Model {
     public final void delete() {
         mRepository.delete(this);
         mRepository.removeEntity(this);
-        notifyChange();
         mId = null;
     }
 
-    /**
-     * Notifies observers that this record has changed.
-     */
-    private void notifyChange() {
-//        if (EllieProvider.isImplemented()) {
-//            mEllie.getContext().getContentResolver().notifyChange(EllieProvider.createUri(getClass(), id), null);
-//        }
-    }
-
     @Override
     public boolean equals(final Object obj) {
         if (obj instanceof Model && mId != null) {
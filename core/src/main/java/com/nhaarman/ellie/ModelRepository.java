@@ -16,11 +16,15 @@
 
 package com.nhaarman.ellie;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * An interface to perform database operations for a Model.
  *
@@ -32,11 +36,35 @@ public interface ModelRepository<T extends Model> {
 
     void load(T entity, Cursor cursor);
 
+    /**
+     * Returns the indices of the columns of the model in given cursor, to pass to {@link #load(Model, Cursor, int[])}.
+     * Columns that are not in the cursor have index {@code -1}.
+     */
+    @NotNull
+    int[] getColumnIndices(Cursor cursor);
+
+    /**
+     * Loads the values of the current row of given cursor into given entity, using the column indices
+     * that were resolved once for the cursor by {@link #getColumnIndices(Cursor)}.
+     */
+    void load(T entity, Cursor cursor, int[] columnIndices);
+
     /* Model operations */
 
+    @NotNull
+    T newInstance();
+
     @Nullable
     T find(long id);
 
+    /**
+     * Finds the entities with given ids in the database, using batched queries.
+     *
+     * @return The entities in the order of given ids. Ids without a matching row are skipped.
+     */
+    @NotNull
+    List<T> findAll(@NotNull long... ids);
+
     @NotNull
     Long create(T entity);
 
@@ -48,6 +76,14 @@ public interface ModelRepository<T extends Model> {
 
     void delete(T entity);
 
+    /**
+     * Inserts the entities without an id and updates the others, in a single transaction.
+     * The generated ids are assigned and the entities are cached once the transaction has succeeded.
+     * When any of the statements fails, the transaction is rolled back, the entities are left untouched,
+     * and the exception is rethrown.
+     */
+    void saveAll(@NotNull Collection<T> entities);
+
     /* Cache operations */
 
     void putEntity(T entity);
@@ -56,5 +92,43 @@ public interface ModelRepository<T extends Model> {
 
     void removeEntity(T entity);
 
+    void removeEntity(long id);
+
+    void removeAllEntities();
+
     T getOrFindEntity(long id);
+
+    /**
+     * Returns the entities with given ids from the cache, finding the ones that are not cached using batched queries.
+     *
+     * @return The entities in the order of given ids. Ids without a matching row are skipped.
+     */
+    @NotNull
+    List<T> getOrFindAll(@NotNull long... ids);
+
+    /**
+     * Loads the entities with given ids that are not cached yet into the cache, using batched queries.
+     */
+    void prefetchEntities(@NotNull long[] ids);
+
+    /**
+     * Loads the entities referenced by the rows of given cursor into the caches of their repositories, using batched queries.
+     * The column indices are the ones resolved by {@link #getColumnIndices(Cursor)}. The position of the cursor is not restored.
+     */
+    void prefetchReferences(@NotNull Cursor cursor, @NotNull int[] columnIndices);
+
+    /**
+     * Returns the serialized values of the columns of given entity, keyed by column name.
+     */
+    @NotNull
+    ContentValues createContentValues(T entity);
+
+    /**
+     * Returns the estimated heap size of given entity, in bytes.
+     * Referenced models are not included, since they are cached by their own repository.
+     */
+    int sizeOf(T entity);
+
+    @NotNull
+    CacheStats getCacheStats();
 }
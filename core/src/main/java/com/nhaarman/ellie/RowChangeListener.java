@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives a notification with the ids of the changed rows whenever a table is written to.
+ * Notifications are delivered like those of {@link TableChangeListener}: once per table per delivery, with the
+ * rows of all writes in the transaction or debounce window merged.
+ *
+ * @see Ellie#addRowChangeListener(RowChangeListener)
+ */
+public interface RowChangeListener {
+
+    /**
+     * Called after rows of the table of given model type have been inserted, updated or deleted.
+     * The ids are unknown for writes that may affect any row, like a query-builder update without a where clause
+     * or {@link Ellie#notifyChange(Class)}, and when too many rows changed in one delivery to track them individually.
+     *
+     * @param table The type class of the model of which the table has changed.
+     * @param ids   The ids of the changed rows, or {@code null} if they are unknown. Must not be modified.
+     */
+    void onRowsChanged(@NotNull Class<? extends Model> table, @Nullable long[] ids);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives a notification whenever a table is written to.
+ *
+ * @see Ellie#addTableChangeListener(TableChangeListener)
+ * @see RowChangeListener
+ */
+public interface TableChangeListener {
+
+    /**
+     * Called after the table of given model type has been written to.
+     * This method is called on the writing thread after the write, or after the commit of the transaction that
+     * was started by {@link Ellie#beginTransaction()}. With a debounce window set, it is called on a background thread.
+     * It is called once per table per delivery, and should return quickly.
+     *
+     * @param table The type class of the model of which the table has changed.
+     */
+    void onTableChanged(@NotNull Class<? extends Model> table);
+}
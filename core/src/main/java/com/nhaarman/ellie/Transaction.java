@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of the transaction of a single thread: a stack of levels, where every nested level is a savepoint.
+ * <p/>
+ * A level stages the cache operations and the table and row changes made in it. When a nested level is released, its staged
+ * operations are merged into the enclosing level; when it is rolled back, they are discarded. The operations of the
+ * outermost level are applied to the {@link ModelRepository} caches once it has committed.
+ * Until then, the staged entities are only visible to the thread of the transaction.
+ * <p/>
+ * A transaction runs on the writable connection, or, for a read snapshot with write-ahead logging enabled, on a
+ * read-only connection that is held by the thread until the transaction ends.
+ */
+final class Transaction {
+
+    /**
+     * Staged for an id that was removed from the cache.
+     */
+    static final Object REMOVED = new Object();
+
+    /**
+     * Returned by {@link #getStaged(ModelRepository, long)} when there is no staged operation for an id.
+     */
+    static final Object NOT_STAGED = new Object();
+
+    @NotNull
+    private final List<Level> mLevels = new ArrayList<>();
+
+    /**
+     * The connection the transaction runs on.
+     */
+    @NotNull
+    private final SQLiteDatabase mDatabase;
+
+    /**
+     * Whether {@link #mDatabase} is a read-only connection, on which the transaction was begun with plain SQL.
+     */
+    private final boolean mReadConnection;
+
+    Transaction(@NotNull final SQLiteDatabase database, final boolean readConnection) {
+        mDatabase = database;
+        mReadConnection = readConnection;
+    }
+
+    @NotNull
+    SQLiteDatabase getDatabase() {
+        return mDatabase;
+    }
+
+    boolean isReadConnection() {
+        return mReadConnection;
+    }
+
+    int getDepth() {
+        return mLevels.size();
+    }
+
+    void push(final boolean readOnly) {
+        mLevels.add(new Level(readOnly));
+    }
+
+    @NotNull
+    Level pop() {
+        return mLevels.remove(mLevels.size() - 1);
+    }
+
+    @NotNull
+    Level peek() {
+        return mLevels.get(mLevels.size() - 1);
+    }
+
+    /**
+     * Returns whether any of the levels is a read snapshot, in which writes are not allowed.
+     */
+    boolean isReadOnly() {
+        for (Level level : mLevels) {
+            if (level.mReadOnly) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the staged entity for given id, {@link #REMOVED}, or {@link #NOT_STAGED}.
+     */
+    @Nullable
+    Object getStaged(@NotNull final ModelRepository<?> repository, final long id) {
+        for (int i = mLevels.size() - 1; i >= 0; i--) {
+            Level level = mLevels.get(i);
+
+            Map<Long, Object> entries = level.mEntries.get(repository);
+            if (entries != null && entries.containsKey(id)) {
+                return entries.get(id);
+            }
+            if (level.mCleared.contains(repository)) {
+                return REMOVED;
+            }
+        }
+        return NOT_STAGED;
+    }
+
+    static final class Level {
+
+        private final boolean mReadOnly;
+
+        /**
+         * Whether this level has been marked successful.
+         */
+        boolean mSuccessful;
+
+        /**
+         * The tables and rows that were written to in this level.
+         */
+        @NotNull
+        final ChangeSet mChanges = new ChangeSet();
+
+        /**
+         * The staged entities per repository, keyed by id. Removed ids map to {@link #REMOVED}.
+         */
+        @NotNull
+        private final Map<ModelRepository<?>, Map<Long, Object>> mEntries = new HashMap<>();
+
+        /**
+         * The repositories of which the cache was cleared in this level, before the entries in {@link #mEntries}.
+         */
+        @NotNull
+        private final Set<ModelRepository<?>> mCleared = new HashSet<>();
+
+        private Level(final boolean readOnly) {
+            mReadOnly = readOnly;
+        }
+
+        void stage(@NotNull final ModelRepository<?> repository, final long id, @NotNull final Object entity) {
+            Map<Long, Object> entries = mEntries.get(repository);
+            if (entries == null) {
+                entries = new HashMap<>();
+                mEntries.put(repository, entries);
+            }
+            entries.put(id, entity);
+        }
+
+        void stageClear(@NotNull final ModelRepository<?> repository) {
+            mEntries.remove(repository);
+            mCleared.add(repository);
+        }
+
+        /**
+         * Merges the staged operations of this released level into given enclosing level.
+         */
+        void mergeInto(@NotNull final Level parent) {
+            for (ModelRepository<?> repository : mCleared) {
+                parent.stageClear(repository);
+            }
+            for (Map.Entry<ModelRepository<?>, Map<Long, Object>> entry : mEntries.entrySet()) {
+                for (Map.Entry<Long, Object> entity : entry.getValue().entrySet()) {
+                    parent.stage(entry.getKey(), entity.getKey(), entity.getValue());
+                }
+            }
+            parent.mChanges.addAll(mChanges);
+        }
+
+        /**
+         * Applies the staged operations of this committed level to the caches of the repositories.
+         */
+        void apply() {
+            for (ModelRepository<?> repository : mCleared) {
+                repository.removeAllEntities();
+            }
+            for (Map.Entry<ModelRepository<?>, Map<Long, Object>> entry : mEntries.entrySet()) {
+                for (Map.Entry<Long, Object> entity : entry.getValue().entrySet()) {
+                    apply(entry.getKey(), entity.getKey(), entity.getValue());
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T extends Model> void apply(final ModelRepository<T> repository, final long id, final Object entity) {
+            if (entity == REMOVED) {
+                repository.removeEntity(id);
+            } else {
+                repository.putEntity((T) entity);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.internal;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A fixed set of read-only connections to a database in write-ahead logging mode, handed out round-robin.
+ * <p/>
+ * In write-ahead logging mode, readers do not block the writer and the writer does not block readers:
+ * every read statement sees the database as it was at the last commit before the statement started.
+ * Each {@link SQLiteDatabase} serializes the statements of the threads that share it, so the number of connections
+ * bounds the number of reads that execute concurrently.
+ * <p/>
+ * A connection can also be acquired for the exclusive use of one thread, to hold a read transaction open across statements.
+ * Such a connection is skipped by {@link #next()} until it is released.
+ * <p/>
+ * The connections stay open until {@link #close()} is called.
+ */
+public final class ReadConnectionPool {
+
+    @NotNull
+    private final SQLiteDatabase[] mDatabases;
+
+    @NotNull
+    private final AtomicInteger mNext = new AtomicInteger();
+
+    /**
+     * Whether each connection is acquired, {@code 1}, or available, {@code 0}. Only set while holding {@link #mLock}.
+     */
+    @NotNull
+    private final AtomicIntegerArray mHeld;
+
+    @NotNull
+    private final Object mLock = new Object();
+
+    /**
+     * Whether {@link #close()} was called. Only set while holding {@link #mLock}.
+     */
+    private volatile boolean mClosed;
+
+    /**
+     * Opens given number of read-only connections to the database at given path.
+     * The database must already exist, and have been opened by the writer in write-ahead logging mode.
+     *
+     * @param path The path of the database file.
+     * @param size The number of connections.
+     */
+    public ReadConnectionPool(@NotNull final String path, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+
+        mDatabases = new SQLiteDatabase[size];
+        mHeld = new AtomicIntegerArray(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                mDatabases[i] = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+            }
+        } catch (RuntimeException e) {
+            for (SQLiteDatabase database : mDatabases) {
+                if (database != null) {
+                    database.close();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the next read-only connection that is not acquired. The connection must not be closed.
+     *
+     * @return The connection, or {@code null} if all connections are acquired.
+     */
+    @Nullable
+    public SQLiteDatabase next() {
+        if (mClosed) {
+            return null;
+        }
+
+        int start = mNext.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < mDatabases.length; i++) {
+            int index = (start + i) % mDatabases.length;
+            if (mHeld.get(index) == 0) {
+                return mDatabases[index];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Acquires a read-only connection for the exclusive use of the current thread, waiting until one is available.
+     * The connection must be passed to {@link #release(SQLiteDatabase)} when done.
+     *
+     * @throws IllegalStateException if this pool is closed.
+     */
+    @NotNull
+    public SQLiteDatabase acquire() {
+        boolean interrupted = false;
+        try {
+            synchronized (mLock) {
+                while (true) {
+                    if (mClosed) {
+                        throw new IllegalStateException("The read connections are closed.");
+                    }
+
+                    for (int i = 0; i < mDatabases.length; i++) {
+                        if (mHeld.get(i) == 0) {
+                            mHeld.set(i, 1);
+                            return mDatabases[i];
+                        }
+                    }
+
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException ignored) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Releases a connection that was acquired by {@link #acquire()}.
+     */
+    public void release(@NotNull final SQLiteDatabase database) {
+        synchronized (mLock) {
+            for (int i = 0; i < mDatabases.length; i++) {
+                if (mDatabases[i] == database) {
+                    mHeld.set(i, 0);
+                    mLock.notifyAll();
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("The connection is not part of this pool.");
+    }
+
+    /**
+     * Closes all connections, waiting until the acquired connections are released.
+     * Statements that are running on a connection returned by {@link #next()} complete before it is closed.
+     * Afterwards, {@link #next()} returns {@code null} and {@link #acquire()} throws.
+     */
+    public void close() {
+        boolean interrupted = false;
+        try {
+            synchronized (mLock) {
+                mClosed = true;
+                mLock.notifyAll();
+
+                while (isAnyHeld()) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException ignored) {
+                        interrupted = true;
+                    }
+                }
+            }
+
+            for (SQLiteDatabase database : mDatabases) {
+                database.close();
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean isAnyHeld() {
+        for (int i = 0; i < mHeld.length(); i++) {
+            if (mHeld.get(i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return mDatabases.length;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link SQLiteDatabase.CursorFactory} that binds query arguments with their own type,
+ * where {@link SQLiteDatabase#rawQuery(String, String[])} binds every argument as a string.
+ */
+final class BindingCursorFactory implements SQLiteDatabase.CursorFactory {
+
+    @NotNull
+    private final Object[] mArgs;
+
+    private BindingCursorFactory(@NotNull final Object[] args) {
+        mArgs = args;
+    }
+
+    @Override
+    public Cursor newCursor(final SQLiteDatabase db, final SQLiteCursorDriver masterQuery, final String editTable, final SQLiteQuery query) {
+        bind(query, mArgs);
+        return new SQLiteCursor(masterQuery, editTable, query);
+    }
+
+    /**
+     * Runs given query, binding given arguments with their own type.
+     *
+     * @param database The database to query.
+     * @param sql      The SQL query.
+     * @param args     The arguments, or {@code null}.
+     *
+     * @return The resulting {@link Cursor}.
+     */
+    @NotNull
+    static Cursor rawQuery(@NotNull final SQLiteDatabase database, @NotNull final String sql, @Nullable final Object[] args) {
+        if (args == null || args.length == 0) {
+            return database.rawQuery(sql, null);
+        }
+        return database.rawQueryWithFactory(new BindingCursorFactory(args), sql, null, null);
+    }
+
+    /**
+     * Binds given arguments to given program.
+     * Integral numbers and booleans are bound as longs, floating point numbers as doubles, and byte arrays as blobs.
+     * Other arguments are bound as their string representation.
+     *
+     * @param program The program, i.e. a query or statement.
+     * @param args    The arguments, or {@code null}.
+     */
+    static void bind(@NotNull final SQLiteProgram program, @Nullable final Object[] args) {
+        if (args == null) {
+            return;
+        }
+
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            int index = i + 1;
+
+            if (arg == null) {
+                program.bindNull(index);
+            } else if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+                program.bindLong(index, ((Number) arg).longValue());
+            } else if (arg instanceof Double || arg instanceof Float) {
+                program.bindDouble(index, ((Number) arg).doubleValue());
+            } else if (arg instanceof byte[]) {
+                program.bindBlob(index, (byte[]) arg);
+            } else if (arg instanceof Boolean) {
+                program.bindLong(index, (Boolean) arg ? 1 : 0);
+            } else {
+                program.bindString(index, arg.toString());
+            }
+        }
+    }
+}
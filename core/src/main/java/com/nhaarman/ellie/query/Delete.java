@@ -40,8 +40,8 @@ public final class Delete extends QueryBase {
     }
 
     @Override
-    public String getPartSql() {
-        return "DELETE";
+    protected void appendPartSql(final StringBuilder builder) {
+        builder.append("DELETE");
     }
 
     @Override
@@ -64,8 +64,13 @@ public final class Delete extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "FROM " + mParent.getEllie().getTableName(mTable);
+        public void execute() {
+            executeAndRemoveEntities(null, null);
+        }
+
+        @Override
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("FROM ").append(getTableName());
         }
 
         @Override
@@ -86,13 +91,18 @@ public final class Delete extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "WHERE " + mWhere;
+        public void execute() {
+            executeAndRemoveEntities(mWhere, getPartArgs());
+        }
+
+        @Override
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("WHERE ").append(mWhere);
         }
 
         @Override
-        public String[] getPartArgs() {
-            return toStringArray(mWhereArgs);
+        public Object[] getPartArgs() {
+            return mWhereArgs;
         }
 
         @Override
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import android.database.Cursor;
+
+import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.ModelRepository;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Loads entities from the rows of a cursor. The column indices are resolved once, when the loader is created.
+ *
+ * @param <T> The Model type.
+ */
+class EntityLoader<T extends Model> {
+
+    @NotNull
+    private final ModelRepository<T> mRepository;
+
+    @NotNull
+    private final Cursor mCursor;
+
+    private final int mIdIndex;
+
+    @NotNull
+    private final int[] mColumnIndices;
+
+    EntityLoader(@NotNull final ModelRepository<T> repository, @NotNull final Cursor cursor) {
+        mRepository = repository;
+        mCursor = cursor;
+        mIdIndex = cursor.getColumnIndex(Model.COLUMN_ID);
+        mColumnIndices = repository.getColumnIndices(cursor);
+    }
+
+    /**
+     * Loads the entities referenced by all rows of the cursor into the caches of their repositories, using batched queries.
+     * Afterwards, the cursor is positioned at the first row.
+     */
+    void prefetchReferences() {
+        mRepository.prefetchReferences(mCursor, mColumnIndices);
+        mCursor.moveToFirst();
+    }
+
+    /**
+     * Loads the entity at the current position of the cursor.
+     * The cached entity for the row is reused and updated, or a new entity is created and cached.
+     *
+     * @return The entity.
+     */
+    @NotNull
+    T load() {
+        T entity = mRepository.getEntity(mCursor.getLong(mIdIndex));
+        if (entity == null) {
+            entity = mRepository.newInstance();
+        }
+
+        mRepository.load(entity, mCursor, mColumnIndices);
+        mRepository.putEntity(entity);
+        return entity;
+    }
+
+    /**
+     * Loads the values of the row at the current position of the cursor into given entity,
+     * bypassing the cache of the {@link ModelRepository}.
+     *
+     * @param entity The entity to load the values into.
+     *
+     * @return The entity.
+     */
+    @NotNull
+    T loadInto(@NotNull final T entity) {
+        mRepository.load(entity, mCursor, mColumnIndices);
+        return entity;
+    }
+}
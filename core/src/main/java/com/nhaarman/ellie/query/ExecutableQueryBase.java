@@ -17,7 +17,14 @@
 
 package com.nhaarman.ellie.query;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
 import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.ModelRepository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class ExecutableQueryBase extends QueryBase implements ExecutableQuery {
 
@@ -25,8 +32,84 @@ public abstract class ExecutableQueryBase extends QueryBase implements Executabl
         super(parent, table);
     }
 
+    /**
+     * Executes this query. Does not notify Ellie of any change: the queries that write override this method.
+     */
     @Override
     public void execute() {
-        getEllie().getDatabase().execSQL(getSql(), getArgs());
+        execSQL(getEllie().getDatabase());
+    }
+
+    /**
+     * Executes this query, and removes the entities of the affected rows from the cache of the {@link ModelRepository}.
+     * The ids of the affected rows are selected in the same transaction, right before executing this query.
+     * When there is no where clause, all entities are removed from the cache.
+     *
+     * @param where     The where clause of this query, or {@code null} if all rows are affected.
+     * @param whereArgs The arguments for the where clause.
+     */
+    protected final void executeAndRemoveEntities(@Nullable final String where, @Nullable final Object[] whereArgs) {
+        SQLiteDatabase database = getEllie().getDatabase();
+        ModelRepository<? extends Model> repository = getEllie().getModelRepository(mTable);
+
+        if (where == null) {
+            checkWritable();
+            execSQL(database);
+            repository.removeAllEntities();
+            getEllie().notifyChange(mTable);
+            return;
+        }
+
+        long[] ids;
+        getEllie().beginTransaction();
+        try {
+            ids = selectIds(database, where, whereArgs);
+            execSQL(database);
+            getEllie().setTransactionSuccessful();
+        } finally {
+            getEllie().endTransaction();
+        }
+
+        for (long id : ids) {
+            repository.removeEntity(id);
+        }
+        getEllie().notifyChange(mTable, ids);
+    }
+
+    /**
+     * Throws when the current thread is in a read snapshot. With write-ahead logging, the snapshot runs on a read-only
+     * connection, so a write on the writable connection would not be part of it and could not be rolled back.
+     *
+     * @throws IllegalStateException if the current thread is in a read snapshot.
+     */
+    protected final void checkWritable() {
+        if (getEllie().inReadSnapshot()) {
+            throw new IllegalStateException("Cannot write to " + mTable.getSimpleName() + " in a read snapshot.");
+        }
+    }
+
+    @NotNull
+    private long[] selectIds(final SQLiteDatabase database, final String where, final Object[] whereArgs) {
+        String sql = "SELECT " + Model.COLUMN_ID + " FROM " + getEllie().getTableName(mTable) + " WHERE " + where;
+
+        Cursor cursor = BindingCursorFactory.rawQuery(database, sql, whereArgs);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void execSQL(final SQLiteDatabase database) {
+        Object[] args = getArgs();
+        if (args == null) {
+            database.execSQL(getSql());
+        } else {
+            database.execSQL(getSql(), args);
+        }
     }
 }
@@ -17,8 +17,6 @@
 
 package com.nhaarman.ellie.query;
 
-import android.text.TextUtils;
-
 import com.nhaarman.ellie.Ellie;
 import com.nhaarman.ellie.Model;
 
@@ -46,8 +44,8 @@ public final class Insert extends QueryBase {
     }
 
     @Override
-    public String getPartSql() {
-        return "INSERT";
+    protected void appendPartSql(final StringBuilder builder) {
+        builder.append("INSERT");
     }
 
     @Override
@@ -69,15 +67,18 @@ public final class Insert extends QueryBase {
         }
 
         @Override
-        protected String getPartSql() {
-            StringBuilder builder = new StringBuilder();
-            builder.append("INTO ");
-            builder.append(((Insert) mParent).getEllie().getTableName(mTable));
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("INTO ").append(getTableName());
             if (mColumns != null && mColumns.length > 0) {
-                builder.append("(").append(TextUtils.join(", ", mColumns)).append(")");
+                builder.append('(');
+                for (int i = 0; i < mColumns.length; i++) {
+                    if (i > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(mColumns[i]);
+                }
+                builder.append(')');
             }
-
-            return builder.toString();
         }
 
         @Override
@@ -100,26 +101,26 @@ public final class Insert extends QueryBase {
             if (((Into) mParent).mColumns != null && ((Into) mParent).mColumns.length != mValuesArgs.length) {
                 throw new MalformedQueryException("Number of columns does not match number of values.");
             }
+            checkWritable();
             super.execute();
+            getEllie().notifyChange(mTable);
         }
 
         @Override
-        protected String getPartSql() {
-            StringBuilder builder = new StringBuilder();
+        protected void appendPartSql(final StringBuilder builder) {
             builder.append("VALUES(");
             for (int i = 0; i < mValuesArgs.length; i++) {
                 if (i > 0) {
                     builder.append(", ");
                 }
-                builder.append("?");
+                builder.append('?');
             }
-            builder.append(")");
-            return builder.toString();
+            builder.append(')');
         }
 
         @Override
-        protected String[] getPartArgs() {
-            return toStringArray(mValuesArgs);
+        protected Object[] getPartArgs() {
+            return mValuesArgs;
         }
 
         @Override
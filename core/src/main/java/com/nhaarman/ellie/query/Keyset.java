@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import android.content.ContentValues;
+
+import com.nhaarman.ellie.Ellie;
+import com.nhaarman.ellie.Model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * The sort key of a keyset paginated query: the order columns, followed by the id of the table as a tiebreaker.
+ * Rows after a given entity are selected with an expanded predicate
+ * {@code (a >= ? AND (a > ? OR (a = ? AND _id > ?)))}, since row values are not available on all supported SQLite versions.
+ * SQLite cannot use an index for a top-level {@code OR}, so the leading {@code a >= ?} conjunct, which the rest of
+ * the predicate implies, lets it seek to the first value of {@code a} instead of scanning from the start.
+ * The order columns are expected to be {@code NOT NULL}.
+ */
+final class Keyset {
+
+    /**
+     * The order columns as written in the query, without their direction.
+     */
+    @NotNull
+    private final String[] mColumns;
+
+    /**
+     * The names of the order columns in the table, used to read the values of an entity.
+     */
+    @NotNull
+    private final String[] mColumnNames;
+
+    @NotNull
+    private final boolean[] mDescending;
+
+    @NotNull
+    private final String mOrderBy;
+
+    @NotNull
+    private final String mPredicate;
+
+    /**
+     * @param tableName    The name of the table, used to qualify the id tiebreaker.
+     * @param orderColumns The order columns, each optionally followed by {@code ASC} or {@code DESC}.
+     */
+    Keyset(@NotNull final String tableName, @NotNull final String... orderColumns) {
+        int count = orderColumns.length;
+        boolean hasId = count > 0 && Model.COLUMN_ID.equals(getColumnName(stripDirection(orderColumns[count - 1])));
+        int size = hasId ? count : count + 1;
+
+        mColumns = new String[size];
+        mColumnNames = new String[size];
+        mDescending = new boolean[size];
+        for (int i = 0; i < count; i++) {
+            String column = stripDirection(orderColumns[i]);
+            mColumns[i] = column;
+            mColumnNames[i] = getColumnName(column);
+            mDescending[i] = isDescending(orderColumns[i]);
+        }
+        if (!hasId) {
+            mColumns[count] = tableName + '.' + Model.COLUMN_ID;
+            mColumnNames[count] = Model.COLUMN_ID;
+            mDescending[count] = count > 0 && mDescending[count - 1];
+        }
+
+        mOrderBy = createOrderBy();
+        mPredicate = createPredicate();
+    }
+
+    /**
+     * Returns the order by clause, without the {@code ORDER BY} keyword.
+     */
+    @NotNull
+    String getOrderBy() {
+        return mOrderBy;
+    }
+
+    /**
+     * Returns the predicate selecting the rows after the keys passed to {@link #getArgs(Object[])}.
+     */
+    @NotNull
+    String getPredicate() {
+        return mPredicate;
+    }
+
+    /**
+     * Returns the serialized values of the order columns of given entity, as they are at the time of this call.
+     * Entities are shared cache instances that may change later, so a position is kept as these values rather than as the entity.
+     *
+     * @throws IllegalArgumentException if the entity is not saved, or one of its order values is {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    <T extends Model> Object[] getKeys(@NotNull final Ellie ellie, @NotNull final T entity) {
+        if (entity.getId() == null) {
+            throw new IllegalArgumentException("Cannot page after an entity that is not saved.");
+        }
+
+        ContentValues values = ellie.getModelRepository((Class<T>) entity.getClass()).createContentValues(entity);
+        Object[] keys = new Object[mColumnNames.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (!values.containsKey(mColumnNames[i])) {
+                throw new IllegalArgumentException(String.format("%s is not a column of %s.", mColumnNames[i], entity.getClass().getName()));
+            }
+            keys[i] = values.get(mColumnNames[i]);
+            if (keys[i] == null) {
+                throw new IllegalArgumentException(String.format("Cannot page after a null value for %s.", mColumnNames[i]));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the arguments of the predicate for given keys.
+     *
+     * @param keys The values of the order columns, as returned by {@link #getKeys(Ellie, Model)}.
+     */
+    @NotNull
+    Object[] getArgs(@NotNull final Object[] keys) {
+        boolean bounded = keys.length > 1;
+        Object[] args = new Object[keys.length * (keys.length + 1) / 2 + (bounded ? 1 : 0)];
+        int index = 0;
+        if (bounded) {
+            args[index++] = keys[0];
+        }
+        for (int i = 0; i < keys.length; i++) {
+            System.arraycopy(keys, 0, args, index, i + 1);
+            index += i + 1;
+        }
+        return args;
+    }
+
+    @NotNull
+    private String createOrderBy() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mColumns.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(mColumns[i]);
+            if (mDescending[i]) {
+                builder.append(" DESC");
+            }
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    private String createPredicate() {
+        StringBuilder builder = new StringBuilder("(");
+        boolean bounded = mColumns.length > 1;
+        if (bounded) {
+            builder.append(mColumns[0]).append(mDescending[0] ? " <= ? AND (" : " >= ? AND (");
+        }
+        for (int i = 0; i < mColumns.length; i++) {
+            if (i > 0) {
+                builder.append(" OR (");
+            }
+            for (int j = 0; j < i; j++) {
+                builder.append(mColumns[j]).append(" = ? AND ");
+            }
+            builder.append(mColumns[i]).append(mDescending[i] ? " < ?" : " > ?");
+            if (i > 0) {
+                builder.append(')');
+            }
+        }
+        if (bounded) {
+            builder.append(')');
+        }
+        return builder.append(')').toString();
+    }
+
+    @NotNull
+    private static String stripDirection(@NotNull final String orderColumn) {
+        String column = orderColumn.trim();
+        String upperCase = column.toUpperCase(Locale.US);
+        if (upperCase.endsWith(" DESC")) {
+            return column.substring(0, column.length() - 5).trim();
+        }
+        if (upperCase.endsWith(" ASC")) {
+            return column.substring(0, column.length() - 4).trim();
+        }
+        return column;
+    }
+
+    private static boolean isDescending(@NotNull final String orderColumn) {
+        return orderColumn.trim().toUpperCase(Locale.US).endsWith(" DESC");
+    }
+
+    @NotNull
+    private static String getColumnName(@NotNull final String column) {
+        return column.substring(column.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import android.database.Cursor;
+
+import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.ModelRepository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read-only {@link java.util.List} backed by an open {@link Cursor}.
+ * Rows are only hydrated when they are requested through {@link #get(int)}.
+ * The most recently hydrated entities are kept in a small window, so repeated access to the visible rows does not
+ * move the cursor.
+ * <p/>
+ * The list holds on to the cursor until {@link #close()} is called.
+ *
+ * @param <T> The Model type.
+ */
+public class LazyList<T extends Model> extends AbstractList<T> implements RandomAccess, Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 32;
+
+    private static final int NONE = -1;
+
+    @NotNull
+    private final Cursor mCursor;
+
+    @NotNull
+    private final EntityLoader<T> mLoader;
+
+    private final int mSize;
+
+    /**
+     * The positions of the entities in {@link #mWindow}, or {@link #NONE}. A position is stored at index position % window size.
+     */
+    @NotNull
+    private final int[] mWindowPositions;
+
+    @NotNull
+    private final T[] mWindow;
+
+    private boolean mClosed;
+
+    LazyList(@NotNull final ModelRepository<T> repository, @NotNull final Cursor cursor, final int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize <= 0");
+        }
+
+        mCursor = cursor;
+        mLoader = new EntityLoader<>(repository, cursor);
+        mSize = cursor.getCount();
+        mWindowPositions = new int[windowSize];
+        /* The array is never exposed, and holds nothing but entities of type T. */
+        @SuppressWarnings("unchecked")
+        T[] window = (T[]) new Model[windowSize];
+        mWindow = window;
+        Arrays.fill(mWindowPositions, NONE);
+    }
+
+    @Override
+    public synchronized T get(final int location) {
+        if (location < 0 || location >= mSize) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + mSize);
+        }
+        if (mClosed) {
+            throw new IllegalStateException("This list has been closed.");
+        }
+
+        int slot = location % mWindow.length;
+        if (mWindowPositions[slot] != location) {
+            mCursor.moveToPosition(location);
+            mWindow[slot] = mLoader.load();
+            mWindowPositions[slot] = location;
+        }
+
+        return mWindow[slot];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Closes the underlying cursor and releases the hydrated entities.
+     * Calling {@link #get(int)} afterwards results in an {@link IllegalStateException}.
+     */
+    @Override
+    public synchronized void close() {
+        if (!mClosed) {
+            mClosed = true;
+            mCursor.close();
+            Arrays.fill(mWindow, null);
+            Arrays.fill(mWindowPositions, NONE);
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return mClosed;
+    }
+}
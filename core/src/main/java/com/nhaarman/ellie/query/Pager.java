@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.query.Select.From;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fetches the results of a select query page by page using keyset pagination, holding the order values of the last entity of
+ * the previous page. The values are read when the page is fetched, so a later change of that entity does not move the position.
+ * Unlike {@code LIMIT n OFFSET m}, the preceding rows are not read and discarded: with an index on the order columns, every page
+ * starts with an index seek on the first order column. Rows sharing that value with the last entity are scanned again,
+ * so later pages stay about as fast as the first one as long as the first order column is selective.
+ * Instances are created by {@link From#pager(int, String...)} and {@link Select.Where#pager(int, String...)}, and are not thread safe.
+ *
+ * @param <T> The Model type.
+ */
+public final class Pager<T extends Model> {
+
+    @NotNull
+    private final From mFrom;
+
+    @Nullable
+    private final String mWhere;
+
+    @Nullable
+    private final Object[] mWhereArgs;
+
+    @NotNull
+    private final Keyset mKeyset;
+
+    private final int mPageSize;
+
+    @Nullable
+    private T mLast;
+
+    /**
+     * The values of the order columns of {@link #mLast} when it was fetched, or {@code null} for the first page.
+     */
+    @Nullable
+    private Object[] mLastKeys;
+
+    private boolean mExhausted;
+
+    Pager(@NotNull final From from, @Nullable final String where, @Nullable final Object[] whereArgs, @NotNull final Keyset keyset,
+          final int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be positive.");
+        }
+
+        mFrom = from;
+        mWhere = where;
+        mWhereArgs = whereArgs;
+        mKeyset = keyset;
+        mPageSize = pageSize;
+    }
+
+    /**
+     * Fetches the page after the last entity of the previous page.
+     *
+     * @return The entities of the page, or an empty list if there are no more results.
+     */
+    @NotNull
+    public List<T> next() {
+        if (mExhausted) {
+            return Collections.emptyList();
+        }
+
+        List<T> page = mFrom.seekKeys(mWhere, mWhereArgs, mKeyset, mLastKeys).limit(String.valueOf(mPageSize)).fetch();
+        if (page.size() < mPageSize) {
+            mExhausted = true;
+        }
+        if (!page.isEmpty()) {
+            mLast = page.get(page.size() - 1);
+            mLastKeys = mKeyset.getKeys(mFrom.getEllie(), mLast);
+        }
+        return page;
+    }
+
+    /**
+     * Returns whether {@link #next()} may return more results.
+     * Returns {@code true} until a page with less than the page size of entities was fetched.
+     */
+    public boolean hasNext() {
+        return !mExhausted;
+    }
+
+    /**
+     * Returns the last entity of the previous page, which can be passed to {@link #moveAfter(Model)} to restore the position later.
+     */
+    @Nullable
+    public T getLast() {
+        return mLast;
+    }
+
+    /**
+     * Moves this pager to the position after given entity, or to the first page if it is {@code null}.
+     * The position is taken from the values the entity has at the time of this call.
+     *
+     * @throws IllegalArgumentException if the entity is not saved, or one of its order values is {@code null}.
+     */
+    public void moveAfter(@Nullable final T last) {
+        mLastKeys = last == null ? null : mKeyset.getKeys(mFrom.getEllie(), last);
+        mLast = last;
+        mExhausted = false;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+}
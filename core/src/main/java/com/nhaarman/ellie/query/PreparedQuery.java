@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import com.nhaarman.ellie.Ellie;
+import com.nhaarman.ellie.Model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable select query, rendered once by {@link ResultQueryBase#prepare()}.
+ * Every execution binds a new set of arguments to the same SQL, so SQLite can reuse the compiled statement.
+ * Instances are thread safe.
+ *
+ * @param <T> The Model type.
+ */
+public final class PreparedQuery<T extends Model> {
+
+    @NotNull
+    private final Ellie mEllie;
+
+    @NotNull
+    private final Class<T> mTable;
+
+    /**
+     * The tables in the from and join clauses, used to invalidate cached results.
+     */
+    @NotNull
+    private final List<Class<? extends Model>> mTables;
+
+    @NotNull
+    private final String mSql;
+
+    private final int mArgCount;
+
+    private final boolean mCached;
+
+    PreparedQuery(@NotNull final Ellie ellie, @NotNull final Class<T> table, @NotNull final List<Class<? extends Model>> tables,
+                  @NotNull final String sql, final int argCount, final boolean cached) {
+        mEllie = ellie;
+        mTable = table;
+        mTables = Collections.unmodifiableList(new ArrayList<>(tables));
+        mSql = sql;
+        mArgCount = argCount;
+        mCached = cached;
+    }
+
+    @NotNull
+    public String getSql() {
+        return mSql;
+    }
+
+    public int getArgCount() {
+        return mArgCount;
+    }
+
+    /**
+     * Executes this query with given arguments.
+     *
+     * @param args The arguments, in the order of their placeholders.
+     *
+     * @return The resulting entities.
+     */
+    @NotNull
+    public List<T> fetch(@Nullable final Object... args) {
+        Object[] bindArgs = checkArgs(args);
+        if (mCached) {
+            return ResultQueryBase.fetchCached(mEllie, mTable, mTables, mSql, bindArgs);
+        }
+
+        return ResultQueryBase.rawQuery(mEllie, mTable, mSql, bindArgs);
+    }
+
+    /**
+     * Executes this query with given arguments.
+     *
+     * @param args The arguments, in the order of their placeholders.
+     *
+     * @return The first resulting entity, or {@code null} if there is none.
+     */
+    @Nullable
+    public T fetchSingle(@Nullable final Object... args) {
+        List<T> results = fetch(args);
+        if (!results.isEmpty()) {
+            return results.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Executes this query with given arguments, and returns a list which hydrates the resulting rows on access.
+     * The returned list keeps the cursor open: call {@link LazyList#close()} when done.
+     *
+     * @param args The arguments, in the order of their placeholders.
+     *
+     * @return The resulting {@link LazyList}.
+     */
+    @NotNull
+    public LazyList<T> fetchLazy(@Nullable final Object... args) {
+        return ResultQueryBase.fetchLazy(mEllie, mTable, mSql, checkArgs(args), LazyList.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Executes this query with given arguments, and returns an iterator which hydrates the resulting rows one at a time.
+     * The iterator closes its cursor when it is exhausted; call {@link ResultIterator#close()} when stopping early.
+     *
+     * @param args The arguments, in the order of their placeholders.
+     *
+     * @return The resulting {@link ResultIterator}.
+     */
+    @NotNull
+    public ResultIterator<T> iterate(@Nullable final Object... args) {
+        return ResultQueryBase.iterate(mEllie, mTable, mSql, checkArgs(args), false);
+    }
+
+    @Override
+    public String toString() {
+        return mSql;
+    }
+
+    @Nullable
+    private Object[] checkArgs(@Nullable final Object[] args) {
+        int count = args == null ? 0 : args.length;
+        if (count != mArgCount) {
+            throw new IllegalArgumentException("Expected " + mArgCount + " arguments, but got " + count + '.');
+        }
+        return count == 0 ? null : args;
+    }
+}
@@ -23,7 +23,7 @@ public interface Query {
 
     String getSql();
 
-    String[] getArgs();
+    Object[] getArgs();
 
     Ellie getEllie();
 
@@ -24,6 +24,11 @@ public abstract class QueryBase implements Query {
     protected Query mParent;
     protected Class<? extends Model> mTable;
 
+    /**
+     * The name of {@link #mTable}, resolved on first use.
+     */
+    private String mTableName;
+
     protected QueryBase(final Query parent, final Class<? extends Model> table) {
         mParent = parent;
         mTable = table;
@@ -31,57 +36,111 @@ public abstract class QueryBase implements Query {
 
     @Override
     public final String getSql() {
-        if (mParent != null) {
-            return mParent.getSql() + " " + getPartSql().trim();
-        }
-        return getPartSql().trim();
+        StringBuilder builder = new StringBuilder(128);
+        appendSql(builder);
+        return builder.toString();
     }
 
     @Override
-    public final String[] getArgs() {
-        if (mParent != null) {
-            return join(mParent.getArgs(), getPartArgs());
+    public final Object[] getArgs() {
+        int count = getArgCount();
+        if (count < 0) {
+            return null;
         }
-        return getPartArgs();
-    }
 
-    protected String getPartSql() {
-        return null;
+        Object[] args = new Object[count];
+        copyArgs(args);
+        return args;
     }
 
-    protected String[] getPartArgs() {
-        return null;
+    /**
+     * Appends the SQL of the parents of this query and of this part, separated by single spaces.
+     */
+    final void appendSql(final StringBuilder builder) {
+        if (mParent instanceof QueryBase) {
+            ((QueryBase) mParent).appendSql(builder);
+        } else if (mParent != null) {
+            builder.append(mParent.getSql());
+        }
+
+        if (builder.length() > 0) {
+            builder.append(' ');
+        }
+        appendPartSql(builder);
+
+        int length = builder.length();
+        while (length > 0 && Character.isWhitespace(builder.charAt(length - 1))) {
+            length--;
+        }
+        builder.setLength(length);
     }
 
-    protected final String[] toStringArray(final Object[] array) {
-        if (array == null) {
-            return null;
+    /**
+     * Returns the total number of arguments of this query and its parents, or -1 if none of them has arguments.
+     */
+    private int getArgCount() {
+        int count = -1;
+        if (mParent instanceof QueryBase) {
+            count = ((QueryBase) mParent).getArgCount();
+        } else if (mParent != null && mParent.getArgs() != null) {
+            count = mParent.getArgs().length;
         }
-        final String[] transformedArray = new String[array.length];
-        for (int i = 0; i < array.length; i++) {
-            transformedArray[i] = String.valueOf(array[i]);
+
+        Object[] partArgs = getPartArgs();
+        if (partArgs != null) {
+            count = Math.max(count, 0) + partArgs.length;
         }
-        return transformedArray;
+        return count;
     }
 
-    private  String[] join(final String[] array1, final String... array2) {
-        if (array1 == null) {
-            return clone(array2);
+    /**
+     * Copies the arguments of the parents of this query and of this part into given array.
+     *
+     * @return The number of copied arguments.
+     */
+    private int copyArgs(final Object[] target) {
+        int offset = 0;
+        if (mParent instanceof QueryBase) {
+            offset = ((QueryBase) mParent).copyArgs(target);
+        } else if (mParent != null && mParent.getArgs() != null) {
+            Object[] parentArgs = mParent.getArgs();
+            System.arraycopy(parentArgs, 0, target, 0, parentArgs.length);
+            offset = parentArgs.length;
         }
-        if (array2 == null) {
-            return clone(array1);
+
+        Object[] partArgs = getPartArgs();
+        if (partArgs != null) {
+            System.arraycopy(partArgs, 0, target, offset, partArgs.length);
+            offset += partArgs.length;
         }
+        return offset;
+    }
 
-        final String[] joinedArray = new String[array1.length + array2.length];
-        System.arraycopy(array1, 0, joinedArray, 0, array1.length);
-        System.arraycopy(array2, 0, joinedArray, array1.length, array2.length);
-        return joinedArray;
+    protected String getPartSql() {
+        StringBuilder builder = new StringBuilder();
+        appendPartSql(builder);
+        return builder.toString().trim();
     }
 
-    private String[] clone(final String[] array) {
-        if (array == null) {
-            return null;
+    /**
+     * Appends the SQL of this part of the query to given builder.
+     */
+    protected abstract void appendPartSql(StringBuilder builder);
+
+    /**
+     * Returns the arguments of this part of the query. The arguments keep their type, and are bound natively when the query is executed.
+     */
+    protected Object[] getPartArgs() {
+        return null;
+    }
+
+    /**
+     * Returns the name of the table of this query.
+     */
+    protected final String getTableName() {
+        if (mTableName == null) {
+            mTableName = getEllie().getTableName(mTable);
         }
-        return array.clone();
+        return mTableName;
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.util.LruCache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the ids of the rows returned by queries marked with {@link ResultQueryBase#cached()}, keyed by their sql
+ * and arguments.
+ * <p/>
+ * Every table has a version that is incremented by {@link #notifyChange(Class)} whenever the table is written to.
+ * A cached result records the versions of the tables it was read from, and is discarded as soon as one of them
+ * has changed.
+ */
+public final class QueryCache {
+
+    private final LruCache<String, Entry> mEntries;
+
+    private final ConcurrentMap<Class<? extends Model>, AtomicLong> mVersions = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize The maximum number of cached query results.
+     */
+    public QueryCache(final int maxSize) {
+        mEntries = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Invalidates all cached results that were read from given table.
+     *
+     * @param table The table that has changed.
+     */
+    public void notifyChange(@NotNull final Class<? extends Model> table) {
+        getVersion(table).incrementAndGet();
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void evictAll() {
+        mEntries.evictAll();
+    }
+
+    /**
+     * Returns the current versions of given tables. Must be called before executing the query that is cached
+     * using {@link #put}, so changes made while the query executes invalidate the result.
+     */
+    @NotNull
+    long[] getVersions(@NotNull final List<Class<? extends Model>> tables) {
+        long[] versions = new long[tables.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = getVersion(tables.get(i)).get();
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the cached ids for given query, or {@code null} if there is no valid result.
+     */
+    @Nullable
+    long[] get(@NotNull final String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        for (int i = 0; i < entry.mTables.size(); i++) {
+            if (getVersion(entry.mTables.get(i)).get() != entry.mVersions[i]) {
+                mEntries.remove(key);
+                return null;
+            }
+        }
+
+        return entry.mIds;
+    }
+
+    void put(@NotNull final String key, @NotNull final List<Class<? extends Model>> tables, @NotNull final long[] versions, @NotNull final long[] ids) {
+        mEntries.put(key, new Entry(tables, versions, ids));
+    }
+
+    /**
+     * Creates the key for a query with given sql and arguments.
+     */
+    @NotNull
+    static String createKey(@NotNull final String sql, @Nullable final Object[] args) {
+        StringBuilder builder = new StringBuilder(sql);
+        if (args != null) {
+            for (Object arg : args) {
+                /* Prefix each argument with its length, so the key is unambiguous. */
+                builder.append('\0');
+                if (arg == null) {
+                    builder.append('-');
+                } else {
+                    /* Arguments are bound with their type, so 1 and "1" may yield different results. */
+                    String value;
+                    if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+                        builder.append('i');
+                        value = arg.toString();
+                    } else if (arg instanceof Double || arg instanceof Float) {
+                        builder.append('r');
+                        value = arg.toString();
+                    } else if (arg instanceof byte[]) {
+                        builder.append('b');
+                        value = Arrays.toString((byte[]) arg);
+                    } else if (arg instanceof Boolean) {
+                        builder.append('i');
+                        value = (Boolean) arg ? "1" : "0";
+                    } else {
+                        builder.append('s');
+                        value = arg.toString();
+                    }
+                    builder.append(value.length()).append(':').append(value);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    private AtomicLong getVersion(@NotNull final Class<? extends Model> table) {
+        AtomicLong version = mVersions.get(table);
+        if (version == null) {
+            AtomicLong newVersion = new AtomicLong();
+            version = mVersions.putIfAbsent(table, newVersion);
+            if (version == null) {
+                version = newVersion;
+            }
+        }
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryCache[entries=%s]", mEntries);
+    }
+
+    private static final class Entry {
+
+        private final List<Class<? extends Model>> mTables;
+        private final long[] mVersions;
+        private final long[] mIds;
+
+        private Entry(final List<Class<? extends Model>> tables, final long[] versions, final long[] ids) {
+            mTables = tables;
+            mVersions = versions;
+            mIds = ids;
+        }
+    }
+}
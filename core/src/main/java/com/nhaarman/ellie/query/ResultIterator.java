@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.query;
+
+import android.database.Cursor;
+
+import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.ModelRepository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link Iterator} which walks an open {@link Cursor} row by row, hydrating one entity at a time.
+ * The cursor is closed when the last row has been passed, or when {@link #close()} is called.
+ * <p/>
+ * The iterator never asks the cursor for its row count: {@link #hasNext()} moves the cursor one row ahead instead.
+ * Note that Android's {@code SQLiteCursor} still counts all rows when it fills its first window, on the first move.
+ * <p/>
+ * When created with {@code reuseEntity}, every call to {@link #next()} returns the same entity instance with the
+ * values of the next row, and the entities are not stored in the cache of the {@link ModelRepository}.
+ *
+ * @param <T> The Model type.
+ */
+public class ResultIterator<T extends Model> implements Iterator<T>, Closeable {
+
+    @NotNull
+    private final Cursor mCursor;
+
+    @NotNull
+    private final EntityLoader<T> mLoader;
+
+    /**
+     * The reused entity, or null if a new entity is hydrated for every row.
+     */
+    @Nullable
+    private final T mEntity;
+
+    /**
+     * Whether the cursor has been moved to the row that the next call to {@link #next()} returns.
+     */
+    private boolean mAdvanced;
+
+    private boolean mClosed;
+
+    ResultIterator(@NotNull final ModelRepository<T> repository, @NotNull final Cursor cursor, final boolean reuseEntity) {
+        mCursor = cursor;
+        mLoader = new EntityLoader<>(repository, cursor);
+        mEntity = reuseEntity ? repository.newInstance() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mClosed) {
+            return false;
+        }
+
+        if (!mAdvanced) {
+            if (!mCursor.moveToNext()) {
+                close();
+                return false;
+            }
+            mAdvanced = true;
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        mAdvanced = false;
+        if (mEntity != null) {
+            return mLoader.loadInto(mEntity);
+        }
+        return mLoader.load();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (!mClosed) {
+            mClosed = true;
+            mCursor.close();
+        }
+    }
+}
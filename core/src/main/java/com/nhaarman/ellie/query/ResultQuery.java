@@ -22,18 +22,64 @@ import com.nhaarman.ellie.Model;
 import java.util.List;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action1;
 
 public interface ResultQuery extends ExecutableQuery {
 
     <T extends Model> List<T> fetch();
 
+    <T extends Model> LazyList<T> fetchLazy();
+
+    <T extends Model> LazyList<T> fetchLazy(int windowSize);
+
+    <T extends Model> ResultIterator<T> iterate();
+
+    <T extends Model> ResultIterator<T> iterate(boolean reuseEntity);
+
+    <T extends Model> void forEach(Action1<T> action);
+
+    <T extends Model> void forEach(Action1<T> action, boolean reuseEntity);
+
     <T extends Model> T fetchSingle();
 
     <T> T fetchValue(Class<T> type);
 
+    long count();
+
+    boolean exists();
+
+    long longValue();
+
+    double doubleValue();
+
+    long sum(String column);
+
+    long min(String column);
+
+    long max(String column);
+
+    double sumDouble(String column);
+
+    double minDouble(String column);
+
+    double maxDouble(String column);
+
     <T extends Model> Observable<List<T>> observable();
 
     <T extends Model> Observable<T> observableSingle();
 
     <T> Observable<T> observableValue(Class<T> type);
+
+    <T extends Model> Observable<List<T>> observe();
+
+    <T extends Model> Observable<List<T>> observe(Scheduler scheduler);
+
+    <T extends Model> Observable<T> observeSingle();
+
+    <T extends Model> Observable<T> observeSingle(Scheduler scheduler);
+
+    <T> Observable<T> observeValue(Class<T> type);
+
+    <T> Observable<T> observeValue(Class<T> type, Scheduler scheduler);
 }
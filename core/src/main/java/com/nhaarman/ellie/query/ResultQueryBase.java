@@ -18,18 +18,28 @@
 package com.nhaarman.ellie.query;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 
 import com.nhaarman.ellie.Ellie;
 import com.nhaarman.ellie.Model;
 import com.nhaarman.ellie.ModelRepository;
+import com.nhaarman.ellie.TableChangeListener;
+
+import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
 
 import static rx.Observable.OnSubscribe;
 
@@ -38,13 +48,18 @@ public abstract class ResultQueryBase extends ExecutableQueryBase implements Res
 
     private Ellie mEllie;
 
+    /**
+     * Whether results are served from, and stored in, the {@link QueryCache}.
+     */
+    private boolean mCached;
+
     protected ResultQueryBase(final Query parent, final Class<? extends Model> table) {
         super(parent, table);
         mEllie = parent.getEllie();
     }
 
-    public static <T extends Model> List<T> rawQuery(final Ellie ellie, final Class<T> cls, final String sql, final String[] selectionArgs) {
-        return processAndCloseCursor(ellie, cls, ellie.getDatabase().rawQuery(sql, selectionArgs));
+    public static <T extends Model> List<T> rawQuery(final Ellie ellie, final Class<T> cls, final String sql, final Object[] selectionArgs) {
+        return processAndCloseCursor(ellie, cls, BindingCursorFactory.rawQuery(ellie.getReadableDatabase(), sql, selectionArgs));
     }
 
     public ResultQueryBase with(final Ellie ellie) {
@@ -52,27 +67,282 @@ public abstract class ResultQueryBase extends ExecutableQueryBase implements Res
         return this;
     }
 
+    /**
+     * Serves the results of {@link #fetch()} and {@link #fetchSingle()} from the {@link QueryCache}.
+     * The cache holds the ids of the resulting rows; the entities are resolved through the {@link ModelRepository} caches.
+     * A cached result is discarded when one of the tables in the from and join clauses is written to.
+     * Tables that are only referenced in the other clauses, for example in sub queries, are not tracked.
+     * Queries executed inside a transaction bypass the cache.
+     *
+     * @return This query.
+     */
+    public ResultQueryBase cached() {
+        mCached = true;
+        return this;
+    }
+
     @Override
     public <T extends Model> List<T> fetch() {
-        return (List<T>) rawQuery(mEllie, mTable, getSql(), getArgs());
+        if (mCached) {
+            return fetchCached(mEllie, this.<T>getModelType(), getTables(), getSql(), getArgs());
+        }
+
+        return rawQuery(mEllie, this.<T>getModelType(), getSql(), getArgs());
+    }
+
+    /**
+     * Renders this query into an immutable template, which can be executed many times with different arguments.
+     * The number of arguments given while building this query determines the number of arguments of the template.
+     *
+     * @return The {@link PreparedQuery}.
+     */
+    public <T extends Model> PreparedQuery<T> prepare() {
+        Object[] args = getArgs();
+        return new PreparedQuery<>(mEllie, this.<T>getModelType(), getTables(), getSql(), args == null ? 0 : args.length, mCached);
+    }
+
+    /**
+     * Executes this query and returns a list which hydrates the resulting rows on access.
+     * The returned list keeps the cursor open: call {@link LazyList#close()} when done.
+     *
+     * @return The resulting {@link LazyList}.
+     */
+    @Override
+    public <T extends Model> LazyList<T> fetchLazy() {
+        return fetchLazy(LazyList.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Executes this query and returns a list which hydrates the resulting rows on access.
+     * The returned list keeps the cursor open: call {@link LazyList#close()} when done.
+     *
+     * @param windowSize The number of hydrated entities the list holds on to.
+     *
+     * @return The resulting {@link LazyList}.
+     */
+    @Override
+    public <T extends Model> LazyList<T> fetchLazy(final int windowSize) {
+        return fetchLazy(mEllie, this.<T>getModelType(), getSql(), getArgs(), windowSize);
+    }
+
+    /**
+     * Returns the type class of the queried model, as the entity type the caller asks for.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Model> Class<T> getModelType() {
+        return (Class<T>) mTable;
+    }
+
+    static <T extends Model> LazyList<T> fetchLazy(final Ellie ellie, final Class<T> cls, final String sql, final Object[] args, final int windowSize) {
+        ModelRepository<T> repository = ellie.getModelRepository(cls);
+        Cursor cursor = BindingCursorFactory.rawQuery(ellie.getReadableDatabase(), sql, args);
+        try {
+            return new LazyList<>(repository, cursor, windowSize);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes this query and returns an iterator which hydrates the resulting rows one at a time.
+     * The iterator closes its cursor when it is exhausted; call {@link ResultIterator#close()} when stopping early.
+     *
+     * @return The resulting {@link ResultIterator}.
+     */
+    @Override
+    public <T extends Model> ResultIterator<T> iterate() {
+        return iterate(false);
+    }
+
+    /**
+     * Executes this query and returns an iterator which hydrates the resulting rows one at a time.
+     * The iterator closes its cursor when it is exhausted; call {@link ResultIterator#close()} when stopping early.
+     *
+     * @param reuseEntity Whether to load every row into the same entity instance, bypassing the cache.
+     *                    The returned entities must not be held on to when true.
+     *
+     * @return The resulting {@link ResultIterator}.
+     */
+    @Override
+    public <T extends Model> ResultIterator<T> iterate(final boolean reuseEntity) {
+        return iterate(mEllie, this.<T>getModelType(), getSql(), getArgs(), reuseEntity);
+    }
+
+    static <T extends Model> ResultIterator<T> iterate(final Ellie ellie, final Class<T> cls, final String sql, final Object[] args,
+                                                       final boolean reuseEntity) {
+        ModelRepository<T> repository = ellie.getModelRepository(cls);
+        Cursor cursor = BindingCursorFactory.rawQuery(ellie.getReadableDatabase(), sql, args);
+        try {
+            return new ResultIterator<>(repository, cursor, reuseEntity);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes this query and calls given action for every resulting row, without keeping the results in memory.
+     *
+     * @param action The action to call.
+     */
+    @Override
+    public <T extends Model> void forEach(final Action1<T> action) {
+        forEach(action, false);
+    }
+
+    /**
+     * Executes this query and calls given action for every resulting row, without keeping the results in memory.
+     *
+     * @param action      The action to call.
+     * @param reuseEntity Whether to load every row into the same entity instance, bypassing the cache.
+     *                    The entities passed to the action must not be held on to when true.
+     */
+    @Override
+    public <T extends Model> void forEach(final Action1<T> action, final boolean reuseEntity) {
+        ResultIterator<T> iterator = iterate(reuseEntity);
+        try {
+            while (iterator.hasNext()) {
+                action.call(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
     }
 
     @Override
     public <T extends Model> T fetchSingle() {
-        List<T> results = (List<T>) rawQuery(mEllie, mTable, getSql(), getArgs());
+        List<T> results = fetch();
         if (!results.isEmpty()) {
             return results.get(0);
         }
         return null;
     }
 
+    /**
+     * Returns the number of rows this query results in.
+     *
+     * @return The number of rows.
+     */
+    @Override
+    public long count() {
+        return simpleQueryForLong("SELECT COUNT(*) FROM (" + getSql() + ')');
+    }
+
+    /**
+     * Returns whether this query results in any rows. SQLite stops executing the query at the first row.
+     *
+     * @return {@code true} if there is at least one row.
+     */
+    @Override
+    public boolean exists() {
+        return simpleQueryForLong("SELECT EXISTS (" + getSql() + ')') != 0;
+    }
+
+    /**
+     * Returns the value of the first column of the first resulting row, as a long.
+     *
+     * @return The value, or {@code 0} if there are no rows or the value is {@code NULL}.
+     */
+    @Override
+    public long longValue() {
+        return simpleQueryForLong(getSql());
+    }
+
+    /**
+     * Returns the value of the first column of the first resulting row, as a double.
+     *
+     * @return The value, or {@code 0} if there are no rows or the value is {@code NULL}.
+     */
+    @Override
+    public double doubleValue() {
+        return simpleQueryForDouble(getSql());
+    }
+
+    /**
+     * Returns the sum of given result column over the rows of this query.
+     *
+     * @param column The name of a result column of this query.
+     *
+     * @return The sum, or {@code 0} if there are no rows.
+     */
+    @Override
+    public long sum(final String column) {
+        return simpleQueryForLong("SELECT SUM(" + column + ") FROM (" + getSql() + ')');
+    }
+
+    /**
+     * Returns the minimum of given result column over the rows of this query.
+     *
+     * @param column The name of a result column of this query.
+     *
+     * @return The minimum, or {@code 0} if there are no rows.
+     */
+    @Override
+    public long min(final String column) {
+        return simpleQueryForLong("SELECT MIN(" + column + ") FROM (" + getSql() + ')');
+    }
+
+    /**
+     * Returns the maximum of given result column over the rows of this query.
+     *
+     * @param column The name of a result column of this query.
+     *
+     * @return The maximum, or {@code 0} if there are no rows.
+     */
+    @Override
+    public long max(final String column) {
+        return simpleQueryForLong("SELECT MAX(" + column + ") FROM (" + getSql() + ')');
+    }
+
+    /**
+     * Returns the sum of given result column over the rows of this query, as a double.
+     * Use this variant for {@code REAL} columns, which {@link #sum(String)} truncates.
+     *
+     * @param column The name of a result column of this query.
+     *
+     * @return The sum, or {@code 0} if there are no rows.
+     */
+    @Override
+    public double sumDouble(final String column) {
+        return simpleQueryForDouble("SELECT SUM(" + column + ") FROM (" + getSql() + ')');
+    }
+
+    /**
+     * Returns the minimum of given result column over the rows of this query, as a double.
+     *
+     * @param column The name of a result column of this query.
+     *
+     * @return The minimum, or {@code 0} if there are no rows.
+     */
+    @Override
+    public double minDouble(final String column) {
+        return simpleQueryForDouble("SELECT MIN(" + column + ") FROM (" + getSql() + ')');
+    }
+
+    /**
+     * Returns the maximum of given result column over the rows of this query, as a double.
+     *
+     * @param column The name of a result column of this query.
+     *
+     * @return The maximum, or {@code 0} if there are no rows.
+     */
+    @Override
+    public double maxDouble(final String column) {
+        return simpleQueryForDouble("SELECT MAX(" + column + ") FROM (" + getSql() + ')');
+    }
+
     @Override
     public <T> T fetchValue(final Class<T> type) {
-        final Cursor cursor = mEllie.getDatabase().rawQuery(getSql(), getArgs());
-        if (!cursor.moveToFirst()) {
-            return null;
+        final Cursor cursor = BindingCursorFactory.rawQuery(mEllie.getReadableDatabase(), getSql(), getArgs());
+        try {
+            return cursor.moveToFirst() ? getValue(cursor, type) : null;
+        } finally {
+            cursor.close();
         }
+    }
 
+    private static <T> T getValue(final Cursor cursor, final Class<T> type) {
         if (type.equals(Byte[].class) || type.equals(byte[].class)) {
             return (T) cursor.getBlob(0);
         }
@@ -113,6 +383,174 @@ public abstract class ResultQueryBase extends ExecutableQueryBase implements Res
         return Observable.create(new ValueOnSubscribe<>(type));
     }
 
+    /**
+     * Returns an observable that emits the results of this query when subscribed to, and again whenever one of the
+     * tables in the from and join clauses is written to. The query is executed on {@link Schedulers#io()}.
+     * Changes that arrive while a query is pending are coalesced into that query. The observable never completes.
+     *
+     * @return The observable.
+     */
+    @Override
+    public <T extends Model> Observable<List<T>> observe() {
+        return observe(Schedulers.io());
+    }
+
+    /**
+     * Like {@link #observe()}, executing the query on given scheduler.
+     */
+    @Override
+    public <T extends Model> Observable<List<T>> observe(final Scheduler scheduler) {
+        return Observable.create(
+                new LiveOnSubscribe<List<T>>(scheduler) {
+                    @Override
+                    protected List<T> query() {
+                        return fetch();
+                    }
+                }
+        );
+    }
+
+    /**
+     * Like {@link #observe()}, emitting the first resulting entity, or {@code null} if there is none.
+     */
+    @Override
+    public <T extends Model> Observable<T> observeSingle() {
+        return observeSingle(Schedulers.io());
+    }
+
+    /**
+     * Like {@link #observe(Scheduler)}, emitting the first resulting entity, or {@code null} if there is none.
+     */
+    @Override
+    public <T extends Model> Observable<T> observeSingle(final Scheduler scheduler) {
+        return Observable.create(
+                new LiveOnSubscribe<T>(scheduler) {
+                    @Override
+                    protected T query() {
+                        return fetchSingle();
+                    }
+                }
+        );
+    }
+
+    /**
+     * Like {@link #observe()}, emitting the result of {@link #fetchValue(Class)}.
+     */
+    @Override
+    public <T> Observable<T> observeValue(final Class<T> type) {
+        return observeValue(type, Schedulers.io());
+    }
+
+    /**
+     * Like {@link #observe(Scheduler)}, emitting the result of {@link #fetchValue(Class)}.
+     */
+    @Override
+    public <T> Observable<T> observeValue(final Class<T> type, final Scheduler scheduler) {
+        return Observable.create(
+                new LiveOnSubscribe<T>(scheduler) {
+                    @Override
+                    protected T query() {
+                        return fetchValue(type);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Executes given query through the {@link QueryCache}.
+     * Inside a transaction the cache is bypassed: the results may contain uncommitted rows, which other threads must
+     * not be served, and cached results miss the changes of the transaction.
+     *
+     * @param tables The tables the results depend on.
+     */
+    static <T extends Model> List<T> fetchCached(final Ellie ellie, final Class<T> cls, final List<Class<? extends Model>> tables,
+                                                 final String sql, final Object[] args) {
+        if (ellie.inTransaction() || ellie.getDatabase().inTransaction()) {
+            return rawQuery(ellie, cls, sql, args);
+        }
+
+        QueryCache queryCache = ellie.getQueryCache();
+        String key = QueryCache.createKey(sql, args);
+
+        long[] ids = queryCache.get(key);
+        if (ids != null) {
+            List<T> entities = getEntities(ellie.getModelRepository(cls), ids);
+            if (entities != null) {
+                return entities;
+            }
+        }
+
+        long[] versions = queryCache.getVersions(tables);
+
+        List<T> entities = rawQuery(ellie, cls, sql, args);
+
+        ids = new long[entities.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entities.get(i).getId();
+        }
+        queryCache.put(key, tables, versions, ids);
+
+        return entities;
+    }
+
+    /**
+     * Runs given single-value query with the arguments of this query, without a cursor.
+     */
+    private long simpleQueryForLong(final String sql) {
+        SQLiteStatement statement = mEllie.getReadableDatabase().compileStatement(sql);
+        try {
+            BindingCursorFactory.bind(statement, getArgs());
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException ignored) {
+            return 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Runs given single-value query with the arguments of this query, reading the value as a double.
+     * {@link SQLiteStatement} can only return longs and strings, so this goes through a cursor.
+     */
+    private double simpleQueryForDouble(final String sql) {
+        Cursor cursor = BindingCursorFactory.rawQuery(mEllie.getReadableDatabase(), sql, getArgs());
+        try {
+            return cursor.moveToFirst() ? cursor.getDouble(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the tables in the from and join clauses of this query.
+     */
+    private List<Class<? extends Model>> getTables() {
+        Query query = this;
+        while (query instanceof QueryBase) {
+            if (query instanceof Select.From) {
+                return ((Select.From) query).getTables();
+            }
+            query = ((QueryBase) query).mParent;
+        }
+
+        return Collections.<Class<? extends Model>>singletonList(mTable);
+    }
+
+    /**
+     * Returns the cached entities for given ids, or {@code null} if any of them is not in the cache.
+     */
+    private static <T extends Model> List<T> getEntities(final ModelRepository<T> repository, final long[] ids) {
+        List<T> entities = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T entity = repository.getEntity(id);
+            if (entity == null) {
+                return null;
+            }
+            entities.add(entity);
+        }
+        return entities;
+    }
+
     /**
      * Iterate over a cursor and load entities. Closes the cursor when finished.
      *
@@ -140,25 +578,18 @@ public abstract class ResultQueryBase extends ExecutableQueryBase implements Res
      * @return The list of entities.
      */
     private static <T extends Model> List<T> processCursor(final Ellie ellie, final Class<T> cls, final Cursor cursor) {
-        final List<T> entities = new ArrayList<>();
-        ModelRepository<T> modelRepository = ellie.getModelRepository(cls);
+        final List<T> entities = new ArrayList<>(cursor.getCount());
 
-        try {
-            Constructor<T> entityConstructor = cls.getConstructor();
-            if (cursor.moveToFirst()) {
-                do {
-                    T entity = modelRepository.getEntity(cursor.getLong(cursor.getColumnIndex(Model.COLUMN_ID)));
-                    if (entity == null) {
-                        entity = entityConstructor.newInstance();
-                    }
+        if (cursor.moveToFirst()) {
+            EntityLoader<T> loader = new EntityLoader<>(ellie.getModelRepository(cls), cursor);
+            if (cursor.getCount() > 1) {
+                loader.prefetchReferences();
+            }
 
-                    entity.load(cursor);
-                    entities.add(entity);
-                }
-                while (cursor.moveToNext());
+            do {
+                entities.add(loader.load());
             }
-        } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
-            throw new IllegalStateException(e);
+            while (cursor.moveToNext());
         }
 
         return entities;
@@ -194,6 +625,71 @@ public abstract class ResultQueryBase extends ExecutableQueryBase implements Res
         }
     }
 
+    /**
+     * Executes the query on subscription, and again after every change to the tables of the query.
+     * At most one execution is pending at any time; it picks up all changes made before it starts.
+     */
+    private abstract class LiveOnSubscribe<R> implements OnSubscribe<R> {
+
+        private final Scheduler mScheduler;
+
+        LiveOnSubscribe(final Scheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        @Override
+        public void call(final Subscriber<? super R> subscriber) {
+            final List<Class<? extends Model>> tables = getTables();
+            final Scheduler.Worker worker = mScheduler.createWorker();
+            final AtomicBoolean pending = new AtomicBoolean(true);
+
+            final Action0 execute = new Action0() {
+                @Override
+                public void call() {
+                    pending.set(false);
+
+                    R result;
+                    try {
+                        result = query();
+                    } catch (RuntimeException e) {
+                        subscriber.onError(e);
+                        return;
+                    }
+
+                    if (!subscriber.isUnsubscribed()) {
+                        subscriber.onNext(result);
+                    }
+                }
+            };
+
+            final TableChangeListener listener = new TableChangeListener() {
+                @Override
+                public void onTableChanged(@NotNull final Class<? extends Model> table) {
+                    if (tables.contains(table) && pending.compareAndSet(false, true)) {
+                        worker.schedule(execute);
+                    }
+                }
+            };
+
+            subscriber.add(worker);
+            subscriber.add(
+                    Subscriptions.create(
+                            new Action0() {
+                                @Override
+                                public void call() {
+                                    mEllie.removeTableChangeListener(listener);
+                                }
+                            }
+                    )
+            );
+
+            mEllie.addTableChangeListener(listener);
+            worker.schedule(execute);
+        }
+
+        protected abstract R query();
+    }
+
     private class ModelOnSubscribe<T extends Model> implements OnSubscribe<T> {
 
         @Override
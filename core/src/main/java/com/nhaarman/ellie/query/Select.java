@@ -23,6 +23,9 @@ import com.nhaarman.ellie.Ellie;
 import com.nhaarman.ellie.Model;
 import com.nhaarman.ellie.query.Select.Join.Type;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -53,16 +56,18 @@ public final class Select extends QueryBase {
     }
 
     @Override
-    public String getPartSql() {
-        StringBuilder builder = new StringBuilder();
+    protected void appendPartSql(final StringBuilder builder) {
         builder.append("SELECT ");
         if (mColumns != null && mColumns.length > 0) {
-            builder.append(TextUtils.join(", ", mColumns)).append(" ");
+            for (int i = 0; i < mColumns.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(mColumns[i]);
+            }
         } else {
-            builder.append("* ");
+            builder.append('*');
         }
-
-        return builder.toString();
     }
 
     @Override
@@ -138,6 +143,78 @@ public final class Select extends QueryBase {
             return new Limit(this, mTable, limit);
         }
 
+        /**
+         * Selects the rows after given entity in the order of given columns, using keyset pagination.
+         * The id of the table is appended to the order columns as a tiebreaker. Order columns must be {@code NOT NULL}.
+         *
+         * @param last         The last entity of the previous page, or {@code null} for the first page.
+         * @param orderColumns The order columns, each optionally followed by {@code ASC} or {@code DESC}.
+         */
+        public OrderBy pageAfter(@Nullable final Model last, final String... orderColumns) {
+            return seek(null, null, new Keyset(getTableName(), orderColumns), last);
+        }
+
+        /**
+         * Returns a {@link Pager} fetching the results of this query in pages, in the order of given columns.
+         *
+         * @see #pageAfter(Model, String...)
+         */
+        public <T extends Model> Pager<T> pager(final int pageSize, final String... orderColumns) {
+            return new Pager<>(this, null, null, new Keyset(getTableName(), orderColumns), pageSize);
+        }
+
+        /**
+         * Returns the keyset paginated query for given where clause, selecting the rows after given entity.
+         */
+        OrderBy seek(@Nullable final String where, @Nullable final Object[] whereArgs, @NotNull final Keyset keyset, @Nullable final Model last) {
+            return seekKeys(where, whereArgs, keyset, last == null ? null : keyset.getKeys(getEllie(), last));
+        }
+
+        /**
+         * Returns the keyset paginated query for given where clause, selecting the rows after given keys.
+         *
+         * @param keys The values of the order columns of the last row, as returned by {@link Keyset#getKeys(Ellie, Model)},
+         *             or {@code null} for the first page.
+         */
+        OrderBy seekKeys(@Nullable final String where, @Nullable final Object[] whereArgs, @NotNull final Keyset keyset,
+                         @Nullable final Object[] keys) {
+            Query parent = this;
+            if (keys != null) {
+                Object[] keysetArgs = keyset.getArgs(keys);
+                if (where == null) {
+                    parent = new Where(this, mTable, keyset.getPredicate(), keysetArgs);
+                } else {
+                    parent = new Where(this, mTable, '(' + where + ") AND " + keyset.getPredicate(), concat(whereArgs, keysetArgs));
+                }
+            } else if (where != null) {
+                parent = new Where(this, mTable, where, whereArgs);
+            }
+            return new OrderBy(parent, mTable, keyset.getOrderBy());
+        }
+
+        private static Object[] concat(@Nullable final Object[] first, @NotNull final Object[] second) {
+            if (first == null) {
+                return second;
+            }
+
+            Object[] result = new Object[first.length + second.length];
+            System.arraycopy(first, 0, result, 0, first.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+
+        /**
+         * Returns the table of this clause, and the tables of its joins.
+         */
+        List<Class<? extends Model>> getTables() {
+            List<Class<? extends Model>> tables = new ArrayList<>(mJoins.size() + 1);
+            tables.add(mTable);
+            for (Join join : mJoins) {
+                tables.add(join.mTable);
+            }
+            return tables;
+        }
+
         private Join addJoin(final Class<? extends Model> table, final Type type) {
             final Join join = new Join(this, table, type);
             mJoins.add(join);
@@ -145,16 +222,13 @@ public final class Select extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            StringBuilder builder = new StringBuilder();
-            builder.append("FROM ");
-            builder.append(mParent.getEllie().getTableName(mTable)).append(" ");
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("FROM ").append(getTableName());
 
             for (Join join : mJoins) {
-                builder.append(join.getPartSql()).append(" ");
+                builder.append(' ');
+                join.appendPartSql(builder);
             }
-
-            return builder.toString();
         }
 
         @Override
@@ -208,8 +282,8 @@ public final class Select extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return mType.getKeyword() + " " + mParent.getEllie().getTableName(mTable) + " " + mConstraint;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append(mType.getKeyword()).append(' ').append(getTableName()).append(' ').append(mConstraint);
         }
 
         @Override
@@ -241,14 +315,39 @@ public final class Select extends QueryBase {
             return new Limit(this, mTable, limits);
         }
 
+        /**
+         * Selects the rows matching this clause after given entity in the order of given columns, using keyset pagination.
+         *
+         * @see From#pageAfter(Model, String...)
+         */
+        public OrderBy pageAfter(@Nullable final Model last, final String... orderColumns) {
+            return getFrom().seek(mWhere, mWhereArgs, new Keyset(getTableName(), orderColumns), last);
+        }
+
+        /**
+         * Returns a {@link Pager} fetching the rows matching this clause in pages, in the order of given columns.
+         *
+         * @see From#pageAfter(Model, String...)
+         */
+        public <T extends Model> Pager<T> pager(final int pageSize, final String... orderColumns) {
+            return new Pager<>(getFrom(), mWhere, mWhereArgs, new Keyset(getTableName(), orderColumns), pageSize);
+        }
+
+        private From getFrom() {
+            if (!(mParent instanceof From)) {
+                throw new IllegalStateException("Keyset pagination requires a where clause directly after the from clause.");
+            }
+            return (From) mParent;
+        }
+
         @Override
-        public String getPartSql() {
-            return "WHERE " + mWhere;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("WHERE ").append(mWhere);
         }
 
         @Override
-        public String[] getPartArgs() {
-            return toStringArray(mWhereArgs);
+        public Object[] getPartArgs() {
+            return mWhereArgs;
         }
 
         @Override
@@ -279,8 +378,8 @@ public final class Select extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "GROUP BY " + mGroupBy;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("GROUP BY ").append(mGroupBy);
         }
 
         @Override
@@ -307,8 +406,8 @@ public final class Select extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "HAVING " + mHaving;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("HAVING ").append(mHaving);
         }
 
         @Override
@@ -330,9 +429,28 @@ public final class Select extends QueryBase {
             return new Limit(this, mTable, limits);
         }
 
+        /**
+         * Selects the rows after given entity in the order of this clause, using keyset pagination.
+         * The order terms must be plain columns, each optionally followed by {@code ASC} or {@code DESC}.
+         *
+         * @throws IllegalStateException if this clause does not directly follow a from or where clause.
+         * @see From#pageAfter(Model, String...)
+         */
+        public OrderBy pageAfter(@Nullable final Model last) {
+            Keyset keyset = new Keyset(getTableName(), mOrderBy.split(","));
+            if (mParent instanceof From) {
+                return ((From) mParent).seek(null, null, keyset, last);
+            }
+            if (mParent instanceof Where) {
+                Where where = (Where) mParent;
+                return where.getFrom().seek(where.mWhere, where.mWhereArgs, keyset, last);
+            }
+            throw new IllegalStateException("Keyset pagination requires an order by clause directly after the from or where clause.");
+        }
+
         @Override
-        public String getPartSql() {
-            return "ORDER BY " + mOrderBy;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("ORDER BY ").append(mOrderBy);
         }
 
         @Override
@@ -356,8 +474,8 @@ public final class Select extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "LIMIT " + mLimit;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("LIMIT ").append(mLimit);
         }
 
         @Override
@@ -376,8 +494,8 @@ public final class Select extends QueryBase {
         }
 
         @Override
-        protected String getPartSql() {
-            return "OFFSET " + mOffset;
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("OFFSET ").append(mOffset);
         }
 
         @Override
@@ -44,8 +44,8 @@ public final class Update extends QueryBase {
     }
 
     @Override
-    public String getPartSql() {
-        return "UPDATE " + mEllie.getTableName(mTable);
+    protected void appendPartSql(final StringBuilder builder) {
+        builder.append("UPDATE ").append(getTableName());
     }
 
     @Override
@@ -73,13 +73,18 @@ public final class Update extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "SET " + mSet;
+        public void execute() {
+            executeAndRemoveEntities(null, null);
         }
 
         @Override
-        public String[] getPartArgs() {
-            return toStringArray(mSetArgs);
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("SET ").append(mSet);
+        }
+
+        @Override
+        public Object[] getPartArgs() {
+            return mSetArgs;
         }
 
         @Override
@@ -100,13 +105,18 @@ public final class Update extends QueryBase {
         }
 
         @Override
-        public String getPartSql() {
-            return "WHERE " + mWhere;
+        public void execute() {
+            executeAndRemoveEntities(mWhere, getPartArgs());
+        }
+
+        @Override
+        protected void appendPartSql(final StringBuilder builder) {
+            builder.append("WHERE ").append(mWhere);
         }
 
         @Override
-        public String[] getPartArgs() {
-            return toStringArray(mWhereArgs);
+        public Object[] getPartArgs() {
+            return mWhereArgs;
         }
 
         @Override
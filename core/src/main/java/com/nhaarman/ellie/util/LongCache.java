@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+/**
+ * A cache that maps primitive {@code long} keys to values.
+ * Implementations must be safe for use by multiple threads.
+ *
+ * @param <V> The type of the cached values.
+ */
+public interface LongCache<V> {
+
+    /**
+     * Returns the value for {@code key} if it exists in the cache.
+     *
+     * @param key The key to look up.
+     *
+     * @return The cached value, or {@code null} if there is none.
+     */
+    V get(long key);
+
+    /**
+     * Caches {@code value} for {@code key}.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    V put(long key, V value);
+
+    /**
+     * Removes the entry for {@code key} if it exists.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    V remove(long key);
+
+    /**
+     * Clears the cache.
+     */
+    void evictAll();
+
+    /**
+     * Returns the sum of the sizes of the entries in this cache.
+     */
+    int size();
+
+    /**
+     * Returns the maximum sum of the sizes of the entries in this cache.
+     */
+    int maxSize();
+
+    /**
+     * Returns the number of times {@link #get} returned a value that was
+     * already present in the cache.
+     */
+    int hitCount();
+
+    /**
+     * Returns the number of times {@link #get} returned null.
+     */
+    int missCount();
+
+    /**
+     * Returns the number of times {@link #put} was called.
+     */
+    int putCount();
+
+    /**
+     * Returns the number of values that have been evicted.
+     */
+    int evictionCount();
+}
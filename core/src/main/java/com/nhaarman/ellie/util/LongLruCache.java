@@ -0,0 +1,537 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * An {@link LruCache} variant that uses primitive {@code long} keys.
+ * <p/>
+ * Entries are stored in parallel arrays, and are indexed by an open addressing hash table using linear probing.
+ * The access order is kept in an intrusive doubly linked list over the entry arrays, so lookups neither box the key
+ * nor allocate any objects.
+ * <p/>
+ * The size of an entry is determined once, when it is put in the cache, so values may change
+ * while they are in the cache.
+ * <p/>
+ * When a {@link MemoryBudget} is supplied, the size of this cache counts towards the budget,
+ * and entries are evicted as described there when the budget is exceeded.
+ *
+ * @param <V> The type of the cached values.
+ */
+@SuppressWarnings("unchecked")
+public class LongLruCache<V> implements LongCache<V> {
+
+    /**
+     * Marks an empty slot in the hash table, and the end of the access order list.
+     */
+    private static final int NONE = -1;
+
+    static final int MINIMUM_CAPACITY = 16;
+
+    /**
+     * The hash table, containing entry indices. Its length is always a power of two.
+     */
+    private int[] mTable;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int[] mSizes;
+
+    /**
+     * The previous and next entries in the access order list. Free entries are chained using {@code mNext}.
+     */
+    private int[] mPrevious;
+    private int[] mNext;
+
+    /**
+     * The least recently used entry.
+     */
+    private int mHead = NONE;
+
+    /**
+     * The most recently used entry.
+     */
+    private int mTail = NONE;
+
+    /**
+     * The first free entry, or {@link #NONE} if all allocated entries are in use.
+     */
+    private int mFree = NONE;
+
+    /**
+     * The number of entries that have ever been allocated.
+     */
+    private int mAllocated;
+
+    /**
+     * The number of entries in this cache.
+     */
+    private int mCount;
+
+    /**
+     * Size of this cache in units. Not necessarily the number of elements.
+     */
+    private int mSize;
+    private int mMaxSize;
+
+    /**
+     * The budget this cache counts towards, or {@code null}. Guarded by the lock of this cache.
+     */
+    @Nullable
+    private MemoryBudget mBudget;
+
+    private int mPutCount;
+    private int mEvictionCount;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param maxSize for caches that do not override {@link #sizeOf}, this is
+     *                the maximum number of entries in the cache. For all other caches,
+     *                this is the maximum sum of the sizes of the entries in this cache.
+     */
+    public LongLruCache(final int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize for caches that do not override {@link #sizeOf}, this is
+     *                the maximum number of entries in the cache. For all other caches,
+     *                this is the maximum sum of the sizes of the entries in this cache.
+     * @param budget  The {@link MemoryBudget} this cache shares with other caches, or {@code null}.
+     */
+    public LongLruCache(final int maxSize, @Nullable final MemoryBudget budget) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mBudget = budget;
+
+        allocate(MINIMUM_CAPACITY);
+
+        if (budget != null) {
+            budget.register(this);
+        }
+    }
+
+    /**
+     * Sets the size of the cache.
+     *
+     * @param maxSize The new maximum size.
+     */
+    public void resize(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        synchronized (this) {
+            mMaxSize = maxSize;
+        }
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Stops counting this cache towards given budget, if it still does.
+     */
+    void detachBudget(@NotNull final MemoryBudget budget) {
+        synchronized (this) {
+            if (mBudget == budget) {
+                mBudget = null;
+                budget.add(-mSize);
+            }
+        }
+    }
+
+    /**
+     * Returns the value for {@code key} if it exists in the cache.
+     * If a value was returned, it is moved to the head of the queue.
+     *
+     * @param key The key to look up.
+     *
+     * @return The cached value, or {@code null} if there is none.
+     */
+    @Override
+    public final V get(final long key) {
+        synchronized (this) {
+            int entry = mTable[indexOf(key)];
+            if (entry != NONE) {
+                moveToTail(entry);
+                mHitCount++;
+                return (V) mValues[entry];
+            }
+
+            mMissCount++;
+            return null;
+        }
+    }
+
+    /**
+     * Caches {@code value} for {@code key}. The value is moved to the head of
+     * the queue.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    @Override
+    public final V put(final long key, final V value) {
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+
+        int size = safeSizeOf(key, value);
+
+        V previous = null;
+        MemoryBudget budget;
+        synchronized (this) {
+            budget = mBudget;
+            mPutCount++;
+
+            int index = indexOf(key);
+            int entry = mTable[index];
+            if (entry == NONE) {
+                if (mCount + 1 > mTable.length >> 1) {
+                    rehash(mTable.length << 1);
+                    index = indexOf(key);
+                }
+
+                entry = newEntry(key, value, size);
+                mTable[index] = entry;
+                linkLast(entry);
+                changeSize(size);
+            } else {
+                previous = (V) mValues[entry];
+                mValues[entry] = value;
+                changeSize(size - mSizes[entry]);
+                mSizes[entry] = size;
+                moveToTail(entry);
+            }
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, value);
+        }
+
+        trimToSize(maxSize());
+        if (budget != null) {
+            budget.trim();
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the eldest entries until the total of remaining entries is at or
+     * below the requested size.
+     *
+     * @param maxSize the maximum size of the cache before returning. May be -1
+     *                to evict even 0-sized elements.
+     */
+    public void trimToSize(final int maxSize) {
+        while (true) {
+            long key;
+            V value;
+            synchronized (this) {
+                if (mSize <= maxSize || mCount == 0) {
+                    break;
+                }
+
+                key = mKeys[mHead];
+                value = (V) mValues[mHead];
+                removeEntry(indexOf(key));
+                mEvictionCount++;
+            }
+
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    /**
+     * Removes the entry for {@code key} if it exists.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    @Override
+    public final V remove(final long key) {
+        V previous = null;
+        synchronized (this) {
+            int index = indexOf(key);
+            int entry = mTable[index];
+            if (entry != NONE) {
+                previous = (V) mValues[entry];
+                removeEntry(index);
+            }
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, null);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Called for entries that have been evicted or removed. This method is
+     * invoked when a value is evicted to make space, removed by a call to
+     * {@link #remove}, or replaced by a call to {@link #put}. The default
+     * implementation does nothing.
+     * <p/>
+     * <p>The method is called without synchronization: other threads may
+     * access the cache while this method is executing.
+     *
+     * @param evicted  true if the entry is being removed to make space, false
+     *                 if the removal was caused by a {@link #put} or {@link #remove}.
+     * @param newValue the new value for {@code key}, if it exists. If non-null,
+     *                 this removal was caused by a {@link #put}. Otherwise it was caused by
+     *                 an eviction or a {@link #remove}.
+     */
+    protected void entryRemoved(final boolean evicted, final long key, final V oldValue, final V newValue) {
+    }
+
+    private int safeSizeOf(final long key, final V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry for {@code key} and {@code value} in
+     * user-defined units.  The default implementation returns 1 so that size
+     * is the number of entries and max size is the maximum number of entries.
+     * <p/>
+     * <p>This method is called once when the entry is put in the cache.
+     */
+    protected int sizeOf(final long key, final V value) {
+        return 1;
+    }
+
+    /**
+     * Clear the cache, calling {@link #entryRemoved} on each removed entry.
+     */
+    @Override
+    public final void evictAll() {
+        trimToSize(-1); // -1 will evict 0-sized elements
+    }
+
+    /**
+     * For caches that do not override {@link #sizeOf}, this returns the number
+     * of entries in the cache. For all other caches, this returns the sum of
+     * the sizes of the entries in this cache.
+     */
+    @Override
+    public synchronized final int size() {
+        return mSize;
+    }
+
+    /**
+     * For caches that do not override {@link #sizeOf}, this returns the maximum
+     * number of entries in the cache. For all other caches, this returns the
+     * maximum sum of the sizes of the entries in this cache.
+     */
+    @Override
+    public synchronized final int maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a value that was
+     * already present in the cache.
+     */
+    @Override
+    public synchronized final int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned null.
+     */
+    @Override
+    public synchronized final int missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of times {@link #put} was called.
+     */
+    @Override
+    public synchronized final int putCount() {
+        return mPutCount;
+    }
+
+    /**
+     * Returns the number of values that have been evicted.
+     */
+    @Override
+    public synchronized final int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format(
+                "LongLruCache[maxSize=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                mMaxSize, mHitCount, mMissCount, hitPercent
+        );
+    }
+
+    /**
+     * Spreads the bits of given key, so that sequential ids do not cluster in the hash table.
+     */
+    static int hash(final long key) {
+        int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the index in the hash table where given key is stored,
+     * or the index of the empty slot where it should be stored.
+     */
+    private int indexOf(final long key) {
+        int mask = mTable.length - 1;
+        int index = hash(key) & mask;
+
+        int entry;
+        while ((entry = mTable[index]) != NONE && mKeys[entry] != key) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private void allocate(final int capacity) {
+        mTable = new int[capacity << 1];
+        Arrays.fill(mTable, NONE);
+
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mSizes = new int[capacity];
+        mPrevious = new int[capacity];
+        mNext = new int[capacity];
+    }
+
+    /**
+     * Grows the hash table and the entry arrays. Entry indices remain valid.
+     */
+    private void rehash(final int tableLength) {
+        int capacity = tableLength >> 1;
+
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mValues = Arrays.copyOf(mValues, capacity);
+        mSizes = Arrays.copyOf(mSizes, capacity);
+        mPrevious = Arrays.copyOf(mPrevious, capacity);
+        mNext = Arrays.copyOf(mNext, capacity);
+
+        mTable = new int[tableLength];
+        Arrays.fill(mTable, NONE);
+        for (int entry = mHead; entry != NONE; entry = mNext[entry]) {
+            mTable[indexOf(mKeys[entry])] = entry;
+        }
+    }
+
+    private int newEntry(final long key, final V value, final int size) {
+        int entry;
+        if (mFree != NONE) {
+            entry = mFree;
+            mFree = mNext[entry];
+        } else {
+            entry = mAllocated++;
+        }
+
+        mKeys[entry] = key;
+        mValues[entry] = value;
+        mSizes[entry] = size;
+        mCount++;
+        return entry;
+    }
+
+    /**
+     * Removes the entry at given hash table index, and closes the gap in the probe sequence by shifting
+     * subsequent entries back.
+     */
+    private void removeEntry(final int index) {
+        int entry = mTable[index];
+        unlink(entry);
+        changeSize(-mSizes[entry]);
+        mValues[entry] = null;
+        mNext[entry] = mFree;
+        mFree = entry;
+        mCount--;
+
+        int mask = mTable.length - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (mTable[next] != NONE) {
+            int ideal = hash(mKeys[mTable[next]]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                mTable[gap] = mTable[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mTable[gap] = NONE;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void changeSize(final int delta) {
+        mSize += delta;
+        if (mBudget != null) {
+            mBudget.add(delta);
+        }
+    }
+
+    private void linkLast(final int entry) {
+        mPrevious[entry] = mTail;
+        mNext[entry] = NONE;
+        if (mTail == NONE) {
+            mHead = entry;
+        } else {
+            mNext[mTail] = entry;
+        }
+        mTail = entry;
+    }
+
+    private void unlink(final int entry) {
+        int previous = mPrevious[entry];
+        int next = mNext[entry];
+
+        if (previous == NONE) {
+            mHead = next;
+        } else {
+            mNext[previous] = next;
+        }
+
+        if (next == NONE) {
+            mTail = previous;
+        } else {
+            mPrevious[next] = previous;
+        }
+    }
+
+    private void moveToTail(final int entry) {
+        if (entry != mTail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A maximum size that is shared by a number of {@link LongLruCache}s.
+ * <p/>
+ * Whenever the total size of the caches exceeds the budget, the cache that currently occupies the most of
+ * the budget evicts its least recently used entries, until the total size is within the budget again.
+ * This way caches with expensive entries give up memory first, while caches with small entries keep theirs.
+ */
+public class MemoryBudget {
+
+    private final long mMaxSize;
+
+    private final AtomicLong mSize = new AtomicLong();
+
+    private final List<LongLruCache<?>> mCaches = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param maxSize The maximum sum of the sizes of all caches sharing this budget, typically in bytes.
+     */
+    public MemoryBudget(final long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the sum of the sizes of all caches sharing this budget.
+     */
+    public long size() {
+        return mSize.get();
+    }
+
+    /**
+     * Returns the maximum sum of the sizes of all caches sharing this budget.
+     */
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    void register(final LongLruCache<?> cache) {
+        mCaches.add(cache);
+    }
+
+    /**
+     * Stops counting given cache towards this budget, for example when it is discarded while the budget stays in use.
+     * Its size is subtracted from the budget, and it is no longer trimmed by the budget.
+     * The cache keeps its entries, and remains limited by its own maximum size.
+     *
+     * @param cache A cache that was created with this budget, possibly wrapped in a {@link ReferenceLongCache}.
+     */
+    public void unregister(@NotNull final LongCache<?> cache) {
+        if (cache instanceof ReferenceLongCache) {
+            unregister(((ReferenceLongCache<?>) cache).getBackingCache());
+        } else if (cache instanceof StripedLongLruCache) {
+            ((StripedLongLruCache<?>) cache).detachBudget(this);
+        } else if (cache instanceof LongLruCache && mCaches.remove(cache)) {
+            ((LongLruCache<?>) cache).detachBudget(this);
+        }
+    }
+
+    /**
+     * Called by the caches when their size has changed. Does not acquire any locks.
+     */
+    void add(final long delta) {
+        mSize.addAndGet(delta);
+    }
+
+    /**
+     * Evicts entries from the largest caches until the total size is within the budget.
+     * Only takes the lock of this budget when the budget is exceeded.
+     * Must not be called while holding the lock of one of the caches.
+     */
+    void trim() {
+        if (mSize.get() <= mMaxSize) {
+            return;
+        }
+
+        synchronized (this) {
+            long excess;
+            while ((excess = mSize.get() - mMaxSize) > 0) {
+                LongLruCache<?> largest = null;
+                int largestSize = 0;
+                for (LongLruCache<?> cache : mCaches) {
+                    int size = cache.size();
+                    if (size > largestSize) {
+                        largest = cache;
+                        largestSize = size;
+                    }
+                }
+
+                if (largest == null) {
+                    return;
+                }
+
+                largest.trimToSize((int) Math.max(0, largestSize - excess));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryBudget[size=%d,maxSize=%d,caches=%d]", size(), mMaxSize, mCaches.size());
+    }
+}
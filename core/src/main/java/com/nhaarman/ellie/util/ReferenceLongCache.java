@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/**
+ * A {@link LongCache} that backs another {@code LongCache} with an identity map of weak or soft references.
+ * <p/>
+ * Values that have been evicted from the backing cache, but are still reachable elsewhere, are found in the
+ * identity map on a miss and are moved back into the backing cache. This ensures there is at most one
+ * instance per key as long as that instance is in use.
+ * <p/>
+ * Like {@link StripedLongLruCache}, the identity map is split into independently locked stripes, so wrapping a
+ * striped cache does not funnel all threads through a single lock again. The backing cache is only written to while
+ * holding the stripe of the key, so it never holds another instance than the identity map.
+ *
+ * @param <V> The type of the cached values.
+ */
+public class ReferenceLongCache<V> implements LongCache<V> {
+
+    private final LongCache<V> mCache;
+
+    private final Stripe<V>[] mStripes;
+    private final int mMask;
+
+    private final boolean mSoftReferences;
+
+    /**
+     * @param cache          The backing cache.
+     * @param softReferences {@code true} to hold values using {@link SoftReference}s,
+     *                       {@code false} to use {@link WeakReference}s.
+     */
+    public ReferenceLongCache(final LongCache<V> cache, final boolean softReferences) {
+        this(cache, softReferences, 1);
+    }
+
+    /**
+     * @param cache            The backing cache.
+     * @param softReferences   {@code true} to hold values using {@link SoftReference}s,
+     *                         {@code false} to use {@link WeakReference}s.
+     * @param concurrencyLevel The estimated number of concurrently accessing threads.
+     *                         This is rounded up to the next power of two to determine the number of stripes.
+     */
+    public ReferenceLongCache(final LongCache<V> cache, final boolean softReferences, final int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+
+        mCache = cache;
+        mSoftReferences = softReferences;
+
+        int stripeCount = 1;
+        while (stripeCount < concurrencyLevel) {
+            stripeCount <<= 1;
+        }
+
+        /* An array of a generic type can only be created raw. */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Stripe<V>[] stripes = (Stripe<V>[]) new Stripe[stripeCount];
+        mStripes = stripes;
+        mMask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++) {
+            mStripes[i] = new Stripe<>();
+        }
+    }
+
+    @Override
+    public V get(final long key) {
+        V value = mCache.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        Stripe<V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.purge();
+
+            Reference<V> reference = stripe.mReferences.get(key);
+            if (reference != null) {
+                value = reference.get();
+            }
+
+            if (value == null) {
+                return null;
+            }
+
+            stripe.mReferenceHitCount++;
+
+            /* Under the stripe lock, so a concurrent put or remove of the key cannot be undone by this re-insert. */
+            mCache.put(key, value);
+        }
+
+        return value;
+    }
+
+    @Override
+    public V put(final long key, final V value) {
+        Stripe<V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            V previous = mCache.put(key, value);
+
+            stripe.purge();
+            Reference<V> reference = stripe.mReferences.put(key, createReference(key, value, stripe.mQueue));
+            if (previous == null && reference != null) {
+                previous = reference.get();
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public V remove(final long key) {
+        Stripe<V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            V previous = mCache.remove(key);
+
+            stripe.purge();
+            Reference<V> reference = stripe.mReferences.remove(key);
+            if (previous == null && reference != null) {
+                previous = reference.get();
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        mCache.evictAll();
+
+        for (Stripe<V> stripe : mStripes) {
+            synchronized (stripe) {
+                stripe.mReferences.evictAll();
+                while (stripe.mQueue.poll() != null) {
+                    /* Drain the queue, the references are gone already. */
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return mCache.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    @Override
+    public int hitCount() {
+        return mCache.hitCount() + referenceHitCount();
+    }
+
+    @Override
+    public int missCount() {
+        return mCache.missCount() - referenceHitCount();
+    }
+
+    @Override
+    public int putCount() {
+        /* Values moved back into the backing cache are not counted. */
+        return mCache.putCount() - referenceHitCount();
+    }
+
+    @Override
+    public int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a value that was no longer in the backing cache,
+     * but was still reachable.
+     */
+    public int referenceHitCount() {
+        int result = 0;
+        for (Stripe<V> stripe : mStripes) {
+            synchronized (stripe) {
+                result += stripe.mReferenceHitCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of entries in the identity map, including those of which the reference has been cleared
+     * but not purged yet.
+     */
+    public int referenceCount() {
+        int result = 0;
+        for (Stripe<V> stripe : mStripes) {
+            result += stripe.mReferences.size();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "ReferenceLongCache[cache=%s,referenceHits=%d]",
+                mCache, referenceHitCount()
+        );
+    }
+
+    LongCache<V> getBackingCache() {
+        return mCache;
+    }
+
+    int stripeCount() {
+        return mStripes.length;
+    }
+
+    private Stripe<V> stripeFor(final long key) {
+        /* The same bits as StripedLongLruCache, so a key's stripe and segment are used by the same threads. */
+        int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return mStripes[(hash >>> 16) & mMask];
+    }
+
+    private Reference<V> createReference(final long key, final V value, final ReferenceQueue<V> queue) {
+        if (mSoftReferences) {
+            return new KeyedSoftReference<>(key, value, queue);
+        } else {
+            return new KeyedWeakReference<>(key, value, queue);
+        }
+    }
+
+    /**
+     * A part of the identity map, guarded by its own monitor.
+     */
+    private static final class Stripe<V> {
+
+        /**
+         * Its size is unbounded; cleared references are purged using {@link #mQueue}.
+         */
+        private final LongLruCache<Reference<V>> mReferences = new LongLruCache<>(Integer.MAX_VALUE);
+
+        private final ReferenceQueue<V> mQueue = new ReferenceQueue<>();
+
+        /**
+         * The number of times a value was found in this stripe after a miss in the backing cache.
+         */
+        private int mReferenceHitCount;
+
+        /**
+         * Removes the entries of which the references have been cleared.
+         * Must be called while holding the lock of this stripe.
+         */
+        private void purge() {
+            Reference<? extends V> reference;
+            while ((reference = mQueue.poll()) != null) {
+                long key = ((KeyedReference) reference).getKey();
+                if (mReferences.get(key) == reference) {
+                    mReferences.remove(key);
+                }
+            }
+        }
+    }
+
+    private interface KeyedReference {
+
+        long getKey();
+    }
+
+    private static class KeyedWeakReference<V> extends WeakReference<V> implements KeyedReference {
+
+        private final long mKey;
+
+        KeyedWeakReference(final long key, final V value, final ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            mKey = key;
+        }
+
+        @Override
+        public long getKey() {
+            return mKey;
+        }
+    }
+
+    private static class KeyedSoftReference<V> extends SoftReference<V> implements KeyedReference {
+
+        private final long mKey;
+
+        KeyedSoftReference(final long key, final V value, final ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            mKey = key;
+        }
+
+        @Override
+        public long getKey() {
+            return mKey;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+/**
+ * Estimates the heap size of objects, in bytes.
+ * Used by the generated {@code ModelRepository#sizeOf} implementations.
+ */
+public final class SizeOf {
+
+    /**
+     * The size of an object header.
+     */
+    public static final int OBJECT_HEADER = 8;
+
+    /**
+     * The size of an array header, including its length.
+     */
+    public static final int ARRAY_HEADER = 12;
+
+    /**
+     * The size of a reference.
+     */
+    public static final int REFERENCE = 4;
+
+    /**
+     * The estimated size of an object of unknown type, such as a {@link java.util.Date}.
+     */
+    public static final int UNKNOWN_OBJECT = 24;
+
+    private SizeOf() {
+    }
+
+    /**
+     * Returns the estimated size of given value, excluding the reference to it.
+     * Strings and arrays are measured, boxed primitives have a fixed size.
+     *
+     * @param value The value.
+     *
+     * @return The estimated size in bytes, or {@code 0} if {@code value} is {@code null}.
+     */
+    public static int object(final Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof String) {
+            /* The String object and its char array. */
+            return align(OBJECT_HEADER + REFERENCE + 3 * 4) + align(ARRAY_HEADER + 2 * ((String) value).length());
+        }
+        if (value instanceof byte[]) {
+            return align(ARRAY_HEADER + ((byte[]) value).length);
+        }
+        if (value instanceof Object[]) {
+            return align(ARRAY_HEADER + REFERENCE * ((Object[]) value).length);
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return align(OBJECT_HEADER + 8);
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return align(OBJECT_HEADER + 4);
+        }
+
+        return UNKNOWN_OBJECT;
+    }
+
+    /**
+     * Rounds given size up to the object alignment of 8 bytes.
+     */
+    public static int align(final int size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link LongCache} that spreads its entries over a number of independently locked {@link LongLruCache} segments.
+ * <p/>
+ * Threads accessing keys in different segments do not contend for the same monitor. The price is that the least
+ * recently used order is only maintained per segment: each segment holds at most its share of the maximum size, and
+ * evicts its own least recently used entries.
+ *
+ * @param <V> The type of the cached values.
+ */
+public class StripedLongLruCache<V> implements LongCache<V> {
+
+    private final Segment[] mSegments;
+    private final int mMask;
+
+    /**
+     * @param maxSize          The maximum number of entries in the cache.
+     * @param concurrencyLevel The estimated number of concurrently accessing threads.
+     *                         This is rounded up to the next power of two to determine the number of segments.
+     */
+    public StripedLongLruCache(final int maxSize, final int concurrencyLevel) {
+        this(maxSize, concurrencyLevel, null);
+    }
+
+    /**
+     * @param maxSize          for caches that do not override {@link #sizeOf}, this is
+     *                         the maximum number of entries in the cache. For all other caches,
+     *                         this is the maximum sum of the sizes of the entries in this cache.
+     * @param concurrencyLevel The estimated number of concurrently accessing threads.
+     *                         This is rounded up to the next power of two to determine the number of segments.
+     * @param budget           The {@link MemoryBudget} the segments share with other caches, or {@code null}.
+     */
+    public StripedLongLruCache(final int maxSize, final int concurrencyLevel, @Nullable final MemoryBudget budget) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount << 1 <= maxSize) {
+            segmentCount <<= 1;
+        }
+
+        /* An array of an inner class of a generic class can only be created raw. */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment[] segments = (Segment[]) new StripedLongLruCache.Segment[segmentCount];
+        mSegments = segments;
+        mMask = segmentCount - 1;
+
+        int segmentSize = maxSize / segmentCount;
+        int remainder = maxSize % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            mSegments[i] = new Segment(i < remainder ? segmentSize + 1 : segmentSize, budget);
+        }
+    }
+
+    @Override
+    public V get(final long key) {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public V put(final long key, final V value) {
+        return segmentFor(key).put(key, value);
+    }
+
+    @Override
+    public V remove(final long key) {
+        return segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void evictAll() {
+        for (Segment segment : mSegments) {
+            segment.evictAll();
+        }
+    }
+
+    @Override
+    public int size() {
+        int result = 0;
+        for (Segment segment : mSegments) {
+            result += segment.size();
+        }
+        return result;
+    }
+
+    @Override
+    public int maxSize() {
+        int result = 0;
+        for (Segment segment : mSegments) {
+            result += segment.maxSize();
+        }
+        return result;
+    }
+
+    @Override
+    public int hitCount() {
+        int result = 0;
+        for (Segment segment : mSegments) {
+            result += segment.hitCount();
+        }
+        return result;
+    }
+
+    @Override
+    public int missCount() {
+        int result = 0;
+        for (Segment segment : mSegments) {
+            result += segment.missCount();
+        }
+        return result;
+    }
+
+    @Override
+    public int putCount() {
+        int result = 0;
+        for (Segment segment : mSegments) {
+            result += segment.putCount();
+        }
+        return result;
+    }
+
+    @Override
+    public int evictionCount() {
+        int result = 0;
+        for (Segment segment : mSegments) {
+            result += segment.evictionCount();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        int hitCount = hitCount();
+        int accesses = hitCount + missCount();
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return String.format(
+                "StripedLongLruCache[maxSize=%d,segments=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                maxSize(), mSegments.length, hitCount, accesses - hitCount, hitPercent
+        );
+    }
+
+    /**
+     * Returns the size of the entry for {@code key} and {@code value} in
+     * user-defined units.  The default implementation returns 1 so that size
+     * is the number of entries and max size is the maximum number of entries.
+     * <p/>
+     * <p>This method is called once when the entry is put in the cache.
+     */
+    protected int sizeOf(final long key, final V value) {
+        return 1;
+    }
+
+    /**
+     * Stops counting the segments towards given budget.
+     */
+    void detachBudget(@NotNull final MemoryBudget budget) {
+        for (Segment segment : mSegments) {
+            budget.unregister(segment);
+        }
+    }
+
+    int segmentCount() {
+        return mSegments.length;
+    }
+
+    private Segment segmentFor(final long key) {
+        /* Use the high bits, since the segments hash the low bits themselves. */
+        int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return mSegments[(hash >>> 16) & mMask];
+    }
+
+    private class Segment extends LongLruCache<V> {
+
+        Segment(final int maxSize, @Nullable final MemoryBudget budget) {
+            super(maxSize, budget);
+        }
+
+        @Override
+        protected int sizeOf(final long key, final V value) {
+            return StripedLongLruCache.this.sizeOf(key, value);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangeSetTest {
+
+    @Test
+    public void testIdsAreMergedPerTable() {
+        ChangeSet changes = new ChangeSet();
+        changes.add(First.class, new long[]{1, 2});
+        changes.add(Second.class, new long[]{3});
+        changes.add(First.class, new long[]{2, 4});
+
+        assertThat(changes.getTables()).containsExactly(First.class, Second.class);
+        assertThat(changes.getIds(First.class)).containsExactly(1, 2, 4);
+        assertThat(changes.getIds(Second.class)).containsExactly(3);
+    }
+
+    @Test
+    public void testUnknownRowsAbsorbIds() {
+        ChangeSet changes = new ChangeSet();
+        changes.add(First.class, new long[]{1});
+        changes.add(First.class, null);
+        changes.add(First.class, new long[]{2});
+
+        assertThat(changes.getTables()).containsExactly(First.class);
+        assertThat(changes.getIds(First.class)).isNull();
+    }
+
+    @Test
+    public void testTooManyRowsBecomeUnknown() {
+        ChangeSet changes = new ChangeSet();
+        for (long id = 0; id < ChangeSet.MAX_ROWS; id++) {
+            changes.add(First.class, new long[]{id});
+        }
+        assertThat(changes.getIds(First.class)).hasSize(ChangeSet.MAX_ROWS);
+
+        changes.add(First.class, new long[]{ChangeSet.MAX_ROWS});
+        assertThat(changes.getIds(First.class)).isNull();
+    }
+
+    @Test
+    public void testAddAll() {
+        ChangeSet parent = new ChangeSet();
+        parent.add(First.class, new long[]{1});
+        ChangeSet child = new ChangeSet();
+        child.add(First.class, new long[]{2});
+        child.add(Second.class, null);
+
+        parent.addAll(child);
+
+        assertThat(parent.getIds(First.class)).containsExactly(1, 2);
+        assertThat(parent.getTables()).containsExactly(First.class, Second.class);
+        assertThat(parent.getIds(Second.class)).isNull();
+    }
+
+    private static class First extends Model {
+
+        First() {
+            super((ModelRepository<? extends Model>) null);
+        }
+    }
+
+    private static class Second extends Model {
+
+        Second() {
+            super((ModelRepository<? extends Model>) null);
+        }
+    }
+}
@@ -21,18 +21,28 @@ import android.content.ContentProvider;
 
 import com.nhaarman.ellie.Ellie;
 import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.ModelRepository;
+import com.nhaarman.ellie.RowChangeListener;
+import com.nhaarman.ellie.TableChangeListener;
 import com.nhaarman.ellie.query.Delete;
 import com.nhaarman.ellie.query.Insert;
+import com.nhaarman.ellie.query.LazyList;
 import com.nhaarman.ellie.query.MalformedQueryException;
+import com.nhaarman.ellie.query.Pager;
+import com.nhaarman.ellie.query.PreparedQuery;
 import com.nhaarman.ellie.query.Query;
+import com.nhaarman.ellie.query.ResultIterator;
 import com.nhaarman.ellie.query.Select;
 import com.nhaarman.ellie.query.Update;
 import com.nhaarman.ellie.test.content.EllieSampleProvider;
 import com.nhaarman.ellie.test.model.Note;
 import com.nhaarman.ellie.test.model.NoteTag;
+import com.nhaarman.ellie.test.model.Sample;
 import com.nhaarman.ellie.test.model.Tag;
 import com.nhaarman.ellie.test.shadows.PersistentShadowSQLiteOpenHelper;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -50,8 +60,11 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
+import rx.Subscription;
 import rx.functions.Action1;
+import rx.schedulers.Schedulers;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -159,6 +172,11 @@ public class EllieTest {
         assertThat(query.getSql()).isEqualTo(sql);
         assertThat(query.getArgs()).isEqualTo(new String[]{"1"});
 
+        sql = "SELECT * FROM notes WHERE _id=? AND body IS NOT ?";
+        query = new Select().from(Note.class).where(Model.COLUMN_ID + "=? AND body IS NOT ?", 1L, null);
+        assertThat(query.getSql()).isEqualTo(sql);
+        assertThat(query.getArgs()).isEqualTo(new Object[]{1L, null});
+
         sql = "SELECT * FROM notes ORDER BY title ASC";
         query = new Select().from(Note.class).orderBy("title ASC");
         assertThat(query.getSql()).isEqualTo(sql);
@@ -333,6 +351,191 @@ public class EllieTest {
         assertThat(notes.size()).isGreaterThan(0);
     }
 
+    @Test
+    public void testCachedSelect() {
+        List<Note> notes = new Select().from(Note.class).cached().fetch();
+        List<Note> cachedNotes = new Select().from(Note.class).cached().fetch();
+        assertThat(cachedNotes).containsExactlyElementsOf(notes);
+
+        Note note = new Note();
+        note.body = "Testing the query cache.";
+        note.save();
+
+        List<Note> updatedNotes = new Select().from(Note.class).cached().fetch();
+        assertThat(updatedNotes).hasSize(notes.size() + 1);
+        assertThat(updatedNotes).contains(note);
+    }
+
+    @Test
+    public void testCachedSelectInTransaction() {
+        Ellie ellie = Ellie.getInstance();
+        List<Note> notes = new Select().from(Note.class).cached().fetch();
+
+        ellie.beginTransaction();
+        try {
+            Note note = new Note();
+            note.body = "Never committed.";
+            note.save();
+
+            assertThat(new Select().from(Note.class).cached().fetch()).hasSize(notes.size() + 1);
+        } finally {
+            ellie.endTransaction();
+        }
+
+        assertThat(new Select().from(Note.class).cached().fetch()).containsExactlyElementsOf(notes);
+    }
+
+    @Test
+    public void testFetchLazy() {
+        List<Note> notes = new Select().from(Note.class).fetch();
+        LazyList<Note> lazyNotes = new Select().from(Note.class).fetchLazy(2);
+
+        assertThat(lazyNotes).hasSize(notes.size());
+        for (int i = notes.size() - 1; i >= 0; i--) {
+            assertThat(lazyNotes.get(i)).isSameAs(notes.get(i));
+        }
+
+        lazyNotes.close();
+        assertThat(lazyNotes.isClosed()).isTrue();
+    }
+
+    @Test
+    public void testForEach() {
+        final List<Note> notes = new Select().from(Note.class).fetch();
+        final List<Note> iteratedNotes = new ArrayList<>();
+        new Select().from(Note.class).forEach(new Action1<Note>() {
+            @Override
+            public void call(final Note note) {
+                iteratedNotes.add(note);
+            }
+        });
+        assertThat(iteratedNotes).containsExactlyElementsOf(notes);
+    }
+
+    @Test
+    public void testIterateReusingEntity() {
+        List<Note> notes = new Select().from(Note.class).fetch();
+        ResultIterator<Note> iterator = new Select().from(Note.class).iterate(true);
+
+        Note first = null;
+        for (Note expected : notes) {
+            assertThat(iterator.hasNext()).isTrue();
+            Note note = iterator.next();
+            if (first == null) {
+                first = note;
+            }
+            assertThat(note).isSameAs(first);
+            assertThat(note.getId()).isEqualTo(expected.getId());
+            assertThat(note.body).isEqualTo(expected.body);
+        }
+        assertThat(iterator.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testFetchPrefetchesReferences() {
+        Ellie.getInstance().getModelRepository(Note.class).removeAllEntities();
+        Ellie.getInstance().getModelRepository(Tag.class).removeAllEntities();
+        Ellie.getInstance().getModelRepository(NoteTag.class).removeAllEntities();
+
+        List<NoteTag> noteTags = new Select().from(NoteTag.class).fetch();
+        assertThat(noteTags.size()).isGreaterThan(1);
+        for (NoteTag noteTag : noteTags) {
+            assertThat(noteTag.note).isNotNull();
+            assertThat(noteTag.tag).isNotNull();
+            assertThat(Ellie.getInstance().getModelRepository(Note.class).getEntity(noteTag.note.getId())).isSameAs(noteTag.note);
+        }
+    }
+
+    @Test
+    public void testSaveAll() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Note note = new Note();
+            note.body = "Saved in bulk " + i;
+            notes.add(note);
+        }
+        Note existing = new Select().from(Note.class).fetchSingle();
+        existing.body = "Updated in bulk";
+        notes.add(existing);
+
+        Ellie.getInstance().saveAll(Note.class, notes);
+
+        for (Note note : notes) {
+            assertThat(note.getId()).isNotNull();
+            assertThat(Ellie.getInstance().getModelRepository(Note.class).getEntity(note.getId())).isSameAs(note);
+        }
+
+        Ellie.getInstance().getModelRepository(Note.class).removeAllEntities();
+        Note reloaded = new Select().from(Note.class).where(Note.COLUMN_ID + "=?", existing.getId()).fetchSingle();
+        assertThat(reloaded.body).isEqualTo("Updated in bulk");
+    }
+
+    @Test
+    public void testSelectWithTypedArgs() {
+        Note note = new Select().from(Note.class).fetchSingle();
+
+        Note selected = new Select().from(Note.class).where(Model.COLUMN_ID + "=?", note.getId()).fetchSingle();
+        assertThat(selected).isSameAs(note);
+
+        Note selectedByInt = new Select().from(Note.class).where(Model.COLUMN_ID + "=?", note.getId().intValue()).fetchSingle();
+        assertThat(selectedByInt).isSameAs(note);
+    }
+
+    @Test
+    public void testPreparedQuery() {
+        List<Note> notes = new Select().from(Note.class).fetch();
+        PreparedQuery<Note> query = new Select().from(Note.class).where(Model.COLUMN_ID + "=?", 0L).prepare();
+        assertThat(query.getSql()).isEqualTo("SELECT * FROM notes WHERE _id=?");
+        assertThat(query.getArgCount()).isEqualTo(1);
+
+        for (Note note : notes) {
+            assertThat(query.fetchSingle(note.getId())).isSameAs(note);
+        }
+
+        try {
+            query.fetch();
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // Successfully threw exception
+            assert true;
+        }
+    }
+
+    @Test
+    public void testFind() {
+        ModelRepository<Note> repository = Ellie.getInstance().getModelRepository(Note.class);
+        Note note = new Select().from(Note.class).fetchSingle();
+        repository.removeEntity(note);
+
+        Note found = repository.find(note.getId());
+        assertThat(found.getId()).isEqualTo(note.getId());
+        assertThat(found.body).isEqualTo(note.body);
+        assertThat(repository.getEntity(note.getId())).isSameAs(found);
+        assertThat(repository.find(Long.MAX_VALUE)).isNull();
+    }
+
+    @Test
+    public void testGetOrFindAll() {
+        ModelRepository<Note> repository = Ellie.getInstance().getModelRepository(Note.class);
+        List<Note> notes = new Select().from(Note.class).fetch();
+        assertThat(notes.size()).isGreaterThan(2);
+
+        long[] ids = new long[notes.size() + 1];
+        for (int i = 0; i < notes.size(); i++) {
+            ids[i] = notes.get(notes.size() - 1 - i).getId();
+        }
+        ids[notes.size()] = Long.MAX_VALUE;
+
+        repository.removeEntity(notes.get(0));
+        List<Note> found = repository.getOrFindAll(ids);
+
+        assertThat(found).hasSize(notes.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertThat(found.get(i).getId()).isEqualTo(ids[i]);
+        }
+        assertThat(repository.getEntity(notes.get(0).getId())).isNotNull();
+    }
+
     @Test
     public void testFetchValue() {
         long sum = new Select("SUM(date)").from(Note.class).fetchValue(long.class);
@@ -342,6 +545,299 @@ public class EllieTest {
         assertThat(count).isGreaterThan(0);
     }
 
+    @Test
+    public void testPageAfter() {
+        assertThat(new Select().from(Note.class).pageAfter(null, "date DESC").limit("10").getSql())
+                .isEqualTo("SELECT * FROM notes ORDER BY date DESC, notes._id DESC LIMIT 10");
+
+        List<Note> notes = new Select().from(Note.class).orderBy("date, _id").fetch();
+        Note last = notes.get(notes.size() / 2);
+
+        Select.OrderBy query = new Select().from(Note.class).where("body IS NOT NULL").pageAfter(last, "date");
+        assertThat(query.getSql()).isEqualTo(
+                "SELECT * FROM notes WHERE (body IS NOT NULL) AND (date >= ? AND (date > ? OR (date = ? AND notes._id > ?))) ORDER BY date, notes._id");
+        assertThat(query.getArgs()).containsExactly(last.date.getTime(), last.date.getTime(), last.date.getTime(), last.getId());
+
+        List<Note> page = query.limit("5").fetch();
+        assertThat(page).containsExactlyElementsOf(notes.subList(notes.size() / 2 + 1, Math.min(notes.size(), notes.size() / 2 + 6)));
+        assertThat(new Select().from(Note.class).orderBy("date").pageAfter(last).getSql())
+                .isEqualTo("SELECT * FROM notes WHERE (date >= ? AND (date > ? OR (date = ? AND notes._id > ?))) ORDER BY date, notes._id");
+        assertThat(new Select().from(Note.class).pageAfter(last, "date DESC").getSql())
+                .isEqualTo("SELECT * FROM notes WHERE (date <= ? AND (date < ? OR (date = ? AND notes._id < ?))) ORDER BY date DESC, notes._id DESC");
+    }
+
+    @Test
+    public void testPager() {
+        List<Note> notes = new Select().from(Note.class).orderBy("date DESC, _id DESC").fetch();
+
+        Pager<Note> pager = new Select().from(Note.class).pager(7, "date DESC");
+        List<Note> paged = new ArrayList<>();
+        while (pager.hasNext()) {
+            paged.addAll(pager.next());
+        }
+
+        assertThat(paged).containsExactlyElementsOf(notes);
+        assertThat(pager.next()).isEmpty();
+        assertThat(pager.getLast()).isSameAs(notes.get(notes.size() - 1));
+
+        pager.moveAfter(null);
+        assertThat(pager.next()).containsExactlyElementsOf(notes.subList(0, Math.min(7, notes.size())));
+    }
+
+    @Test
+    public void testPagerKeepsPositionWhenLastEntityChanges() {
+        List<Note> notes = new Select().from(Note.class).orderBy("date DESC, _id DESC").fetch();
+        assertThat(notes.size()).isGreaterThan(6);
+
+        Pager<Note> pager = new Select().from(Note.class).pager(3, "date DESC");
+        List<Note> first = pager.next();
+
+        Note last = first.get(first.size() - 1);
+        Date date = last.date;
+        last.date = new Date(0);
+        try {
+            assertThat(pager.next()).containsExactlyElementsOf(notes.subList(3, 6));
+        } finally {
+            last.date = date;
+        }
+    }
+
+    @Test
+    public void testObserve() {
+        final List<Long> counts = new ArrayList<>();
+        Subscription subscription = new Select("COUNT(*)").from(Note.class).observeValue(Long.class, Schedulers.immediate()).subscribe(
+                new Action1<Long>() {
+                    @Override
+                    public void call(final Long count) {
+                        counts.add(count);
+                    }
+                }
+        );
+        assertThat(counts).hasSize(1);
+
+        Note note = new Note();
+        note.title = "Observed";
+        note.save();
+        assertThat(counts).containsExactly(counts.get(0), counts.get(0) + 1);
+
+        Tag tag = new Tag();
+        tag.name = "Unobserved";
+        tag.save();
+        assertThat(counts).hasSize(2);
+
+        subscription.unsubscribe();
+        note.delete();
+        assertThat(counts).hasSize(2);
+    }
+
+    @Test
+    public void testTransactionCoalescesNotifications() {
+        final List<Class<? extends Model>> changes = new ArrayList<>();
+        TableChangeListener listener = new TableChangeListener() {
+            @Override
+            public void onTableChanged(@NotNull final Class<? extends Model> table) {
+                changes.add(table);
+            }
+        };
+        Ellie ellie = Ellie.getInstance();
+        ellie.addTableChangeListener(listener);
+
+        ellie.beginTransaction();
+        try {
+            for (int i = 0; i < 10; i++) {
+                Note note = new Note();
+                note.title = "Batched " + i;
+                note.save();
+            }
+            new Delete().from(Note.class).where("title=?", "Batched 0").execute();
+            assertThat(changes).isEmpty();
+            ellie.setTransactionSuccessful();
+        } finally {
+            ellie.endTransaction();
+        }
+        assertThat(changes).containsExactly(Note.class);
+
+        changes.clear();
+        ellie.beginTransaction();
+        try {
+            Note note = new Note();
+            note.title = "Rolled back";
+            note.save();
+        } finally {
+            ellie.endTransaction();
+        }
+        assertThat(changes).isEmpty();
+
+        ellie.removeTableChangeListener(listener);
+    }
+
+    @Test
+    public void testRowChangesAreMergedPerTransaction() {
+        final List<long[]> changes = new ArrayList<>();
+        RowChangeListener listener = new RowChangeListener() {
+            @Override
+            public void onRowsChanged(@NotNull final Class<? extends Model> table, @Nullable final long[] ids) {
+                changes.add(ids);
+            }
+        };
+        Ellie ellie = Ellie.getInstance();
+        ellie.addRowChangeListener(listener);
+
+        Note first = new Note();
+        Note second = new Note();
+        ellie.beginTransaction();
+        try {
+            first.save();
+            second.save();
+            first.title = "Updated";
+            first.save();
+            ellie.setTransactionSuccessful();
+        } finally {
+            ellie.endTransaction();
+        }
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).containsExactly(first.getId(), second.getId());
+
+        changes.clear();
+        new Delete().from(Note.class).where("_id=?", second.getId()).execute();
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).containsExactly(second.getId());
+
+        changes.clear();
+        new Update(Note.class).set("title=?", "All").execute();
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).isNull();
+
+        ellie.removeRowChangeListener(listener);
+    }
+
+    @Test
+    public void testOnlyWritesNotify() {
+        final List<Class<? extends Model>> changes = new ArrayList<>();
+        TableChangeListener listener = new TableChangeListener() {
+            @Override
+            public void onTableChanged(@NotNull final Class<? extends Model> table) {
+                changes.add(table);
+            }
+        };
+        Ellie ellie = Ellie.getInstance();
+        ellie.addTableChangeListener(listener);
+
+        new Select().from(Note.class).execute();
+        assertThat(changes).isEmpty();
+
+        new Insert().into(Note.class, "title").values("Inserted").execute();
+        assertThat(changes).containsExactly(Note.class);
+
+        ellie.removeTableChangeListener(listener);
+    }
+
+    @Test
+    public void testRunInTransaction() {
+        final Ellie ellie = Ellie.getInstance();
+        final ModelRepository<Note> repository = ellie.getModelRepository(Note.class);
+        final Note kept = new Note();
+        final Note rolledBack = new Note();
+
+        long count = ellie.runInTransaction(
+                new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        kept.title = "Kept";
+                        kept.save();
+                        assertThat(repository.getEntity(kept.getId())).isSameAs(kept);
+
+                        try {
+                            ellie.runInTransaction(
+                                    new Callable<Void>() {
+                                        @Override
+                                        public Void call() {
+                                            rolledBack.title = "Rolled back";
+                                            rolledBack.save();
+                                            throw new IllegalStateException("Roll back");
+                                        }
+                                    }
+                            );
+                        } catch (IllegalStateException ignored) {
+                        }
+
+                        return new Select().from(Note.class).where("title=?", "Rolled back").count();
+                    }
+                }
+        );
+
+        assertThat(count).isEqualTo(0);
+        assertThat(repository.getEntity(kept.getId())).isSameAs(kept);
+        assertThat(repository.getEntity(rolledBack.getId())).isNull();
+        assertThat(new Select().from(Note.class).where("_id=?", kept.getId()).exists()).isTrue();
+    }
+
+    @Test
+    public void testRollbackLeavesCacheUntouched() {
+        Ellie ellie = Ellie.getInstance();
+        Note note = new Note();
+
+        ellie.beginTransaction();
+        try {
+            note.title = "Never committed";
+            note.save();
+        } finally {
+            ellie.endTransaction();
+        }
+
+        assertThat(ellie.getModelRepository(Note.class).getEntity(note.getId())).isNull();
+        assertThat(new Select().from(Note.class).where("_id=?", note.getId()).exists()).isFalse();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadSnapshotRejectsWrites() {
+        Ellie.getInstance().runInReadSnapshot(
+                new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Note note = new Note();
+                        note.title = "Snapshot";
+                        note.save();
+                        return null;
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void testAggregates() {
+        long count = new Select().from(Note.class).count();
+        assertThat(count).isEqualTo(new Select("COUNT(*)").from(Note.class).fetchValue(long.class));
+        assertThat(new Select().from(Note.class).exists()).isEqualTo(count > 0);
+        assertThat(new Select().from(Note.class).where("_id=?", -1L).exists()).isFalse();
+        assertThat(new Select().from(Note.class).where("_id=?", -1L).count()).isEqualTo(0);
+
+        long sum = new Select().from(Note.class).sum("date");
+        assertThat(sum).isEqualTo(new Select("SUM(date)").from(Note.class).fetchValue(long.class));
+        assertThat(new Select("SUM(date)").from(Note.class).longValue()).isEqualTo(sum);
+        assertThat(new Select().from(Note.class).min("_id")).isLessThanOrEqualTo(new Select().from(Note.class).max("_id"));
+        assertThat(new Select("AVG(_id)").from(Note.class).doubleValue())
+                .isEqualTo(new Select("AVG(_id)").from(Note.class).fetchValue(double.class));
+        assertThat(new Select("_id").from(Note.class).where("_id=?", -1L).longValue()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDoubleAggregates() {
+        String marker = "testDoubleAggregates " + System.nanoTime();
+        for (double value : new double[]{1.5, 2.25}) {
+            Sample sample = new Sample();
+            sample.string0 = marker;
+            sample.double0 = value;
+            sample.save();
+        }
+
+        assertThat(new Select().from(Sample.class).where("string_0=?", marker).sumDouble("double_0")).isEqualTo(3.75);
+        assertThat(new Select().from(Sample.class).where("string_0=?", marker).minDouble("double_0")).isEqualTo(1.5);
+        assertThat(new Select().from(Sample.class).where("string_0=?", marker).maxDouble("double_0")).isEqualTo(2.25);
+        assertThat(new Select("double_0").from(Sample.class).where("string_0=?", marker).orderBy("double_0").doubleValue()).isEqualTo(1.5);
+        assertThat(new Select().from(Sample.class).where("string_0=?", "none").sumDouble("double_0")).isEqualTo(0);
+    }
+
     @Test
     public void testSaveNoteTagWithoutTag() {
         NoteTag noteTag = new NoteTag();
@@ -359,4 +855,31 @@ public class EllieTest {
         // TODO: This seems like a bit of work
         // assertThat(note.getId()).isNull();
     }
+
+    @Test
+    public void testDeleteByQueryRemovesEntityFromCache() {
+        Note note = new Note();
+        note.body = "this is draft";
+        note.save();
+        long id = note.getId();
+        assertThat(Ellie.getInstance().getModelRepository(Note.class).getEntity(id)).isSameAs(note);
+
+        new Delete().from(Note.class).where(Note.COLUMN_ID + "=?", id).execute();
+
+        assertThat(Ellie.getInstance().getModelRepository(Note.class).getEntity(id)).isNull();
+    }
+
+    @Test
+    public void testUpdateByQueryRemovesEntityFromCache() {
+        Note note = new Note();
+        note.body = "this is draft";
+        note.save();
+        long id = note.getId();
+
+        new Update(Note.class).set("body=?", "updated").where(Note.COLUMN_ID + "=?", id).execute();
+
+        assertThat(Ellie.getInstance().getModelRepository(Note.class).getEntity(id)).isNull();
+        Note updated = new Select().from(Note.class).where(Note.COLUMN_ID + "=?", id).fetchSingle();
+        assertThat(updated.body).isEqualTo("updated");
+    }
 }
\ No newline at end of file
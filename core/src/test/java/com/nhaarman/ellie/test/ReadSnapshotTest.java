@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.test;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nhaarman.ellie.Ellie;
+import com.nhaarman.ellie.query.Select;
+import com.nhaarman.ellie.test.model.Sample;
+import com.nhaarman.ellie.test.shadows.PersistentShadowSQLiteOpenHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Read snapshots with write-ahead logging enabled, which run on a read-only connection.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = PersistentShadowSQLiteOpenHelper.class)
+public class ReadSnapshotTest {
+
+    private Ellie mPrevious;
+
+    private Ellie mEllie;
+
+    @Before
+    public void initialize() {
+        mPrevious = Ellie.getInstance();
+
+        mEllie = new Ellie();
+        mEllie.enableWriteAheadLogging(2);
+        mEllie.init(Robolectric.application, "ReadSnapshotTest.db", 1);
+        Ellie.useInstance(mEllie);
+    }
+
+    @After
+    public void restore() {
+        Ellie.useInstance(mPrevious);
+    }
+
+    @Test
+    public void testSnapshotHoldsOneReadConnection() {
+        mEllie.runInReadSnapshot(
+                new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        assertThat(mEllie.inReadSnapshot()).isTrue();
+                        assertThat(mEllie.getReadableDatabase()).isNotSameAs(mEllie.getDatabase());
+                        assertThat(mEllie.getReadableDatabase()).isSameAs(mEllie.getReadableDatabase());
+                        return null;
+                    }
+                }
+        );
+        assertThat(mEllie.inReadSnapshot()).isFalse();
+    }
+
+    @Test
+    public void testSnapshotDoesNotBlockWriter() {
+        final CountDownLatch written = new CountDownLatch(1);
+
+        long[] counts = mEllie.runInReadSnapshot(
+                new Callable<long[]>() {
+                    @Override
+                    public long[] call() throws InterruptedException {
+                        long before = new Select().with(mEllie).from(Sample.class).count();
+
+                        new Thread(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        new Sample().save();
+                                        written.countDown();
+                                    }
+                                }
+                        ).start();
+                        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+
+                        long after = new Select().with(mEllie).from(Sample.class).count();
+                        return new long[]{before, after};
+                    }
+                }
+        );
+
+        assertThat(counts[1]).isEqualTo(counts[0]);
+        assertThat(new Select().with(mEllie).from(Sample.class).count()).isEqualTo(counts[0] + 1);
+    }
+
+    @Test
+    public void testCloseClosesReadConnections() {
+        SQLiteDatabase connection = mEllie.getReadableDatabase();
+
+        mEllie.close();
+
+        assertThat(connection.isOpen()).isFalse();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotRejectsTransactions() {
+        mEllie.runInReadSnapshot(
+                new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        mEllie.beginTransaction();
+                        return null;
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.test.benchmark;
+
+import com.nhaarman.ellie.util.LongLruCache;
+import com.nhaarman.ellie.util.LruCache;
+import com.nhaarman.ellie.util.StripedLongLruCache;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the throughput of the entity caches when accessed by multiple threads at once.
+ * Each thread performs a mix of 90% reads and 10% writes over a key space twice the size of the cache,
+ * so the access order and evictions are exercised continuously.
+ * <p/>
+ * This class is not part of the regular test run. Run it explicitly, e.g. from the IDE.
+ */
+public class CacheContentionBenchmark {
+
+    private static final int CACHE_SIZE = 1024;
+    private static final int KEY_SPACE = CACHE_SIZE * 2;
+    private static final int OPERATIONS_PER_THREAD = 1000000;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void contention() throws InterruptedException {
+        System.out.println(String.format("%-22s%8s%16s", "cache", "threads", "ops/ms"));
+
+        for (int threadCount : THREAD_COUNTS) {
+            for (int round = 0; round < ROUNDS; round++) {
+                boolean report = round == ROUNDS - 1;
+
+                run("LruCache", threadCount, report, new LruCacheAccessor());
+                run("LongLruCache", threadCount, report, new LongLruCacheAccessor());
+                run("StripedLongLruCache", threadCount, report, new StripedLongLruCacheAccessor(threadCount));
+            }
+        }
+    }
+
+    private static void run(final String name, final int threadCount, final boolean report, final CacheAccessor accessor)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            final long seed = i;
+            new Thread(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            Random random = new Random(seed);
+                            Object value = new Object();
+
+                            try {
+                                start.await();
+                            } catch (InterruptedException ignored) {
+                                return;
+                            }
+
+                            for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                                long key = random.nextInt(KEY_SPACE);
+                                if (random.nextInt(10) == 0) {
+                                    accessor.put(key, value);
+                                } else {
+                                    accessor.get(key);
+                                }
+                            }
+
+                            done.countDown();
+                        }
+                    }
+            ).start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+
+        if (report) {
+            long operations = (long) threadCount * OPERATIONS_PER_THREAD;
+            System.out.println(String.format("%-22s%8d%16d", name, threadCount, operations / elapsedMillis));
+        }
+    }
+
+    private interface CacheAccessor {
+
+        void get(long key);
+
+        void put(long key, Object value);
+    }
+
+    private static class LruCacheAccessor implements CacheAccessor {
+
+        private final LruCache<Long, Object> mCache = new LruCache<>(CACHE_SIZE);
+
+        @Override
+        public void get(final long key) {
+            mCache.get(key);
+        }
+
+        @Override
+        public void put(final long key, final Object value) {
+            mCache.put(key, value);
+        }
+    }
+
+    private static class LongLruCacheAccessor implements CacheAccessor {
+
+        private final LongLruCache<Object> mCache = new LongLruCache<>(CACHE_SIZE);
+
+        @Override
+        public void get(final long key) {
+            mCache.get(key);
+        }
+
+        @Override
+        public void put(final long key, final Object value) {
+            mCache.put(key, value);
+        }
+    }
+
+    private static class StripedLongLruCacheAccessor implements CacheAccessor {
+
+        private final StripedLongLruCache<Object> mCache;
+
+        StripedLongLruCacheAccessor(final int concurrencyLevel) {
+            mCache = new StripedLongLruCache<>(CACHE_SIZE, concurrencyLevel);
+        }
+
+        @Override
+        public void get(final long key) {
+            mCache.get(key);
+        }
+
+        @Override
+        public void put(final long key, final Object value) {
+            mCache.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.test.benchmark;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nhaarman.ellie.Ellie;
+import com.nhaarman.ellie.ModelRepository;
+import com.nhaarman.ellie.test.model.Sample;
+import com.nhaarman.ellie.test.shadows.PersistentShadowSQLiteOpenHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Compares loading a 20-column model from a cursor of 10k rows when the column indices are resolved
+ * for every row, versus once per cursor.
+ * <p/>
+ * This class is not part of the regular test run. Run it explicitly, e.g. from the IDE.
+ * Note that Robolectric's SQLite implementation differs from the one on a device, so only the relative numbers
+ * are meaningful.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = PersistentShadowSQLiteOpenHelper.class)
+public class LoadBenchmark {
+
+    private static final int ROW_COUNT = 10000;
+    private static final int ROUNDS = 5;
+
+    private ModelRepository<Sample> mRepository;
+
+    @Before
+    public void initialize() {
+        Ellie.getInstance().init(Robolectric.application, "LoadBenchmark.db", 1);
+        mRepository = Ellie.getInstance().getModelRepository(Sample.class);
+
+        SQLiteDatabase database = Ellie.getInstance().getDatabase();
+        database.beginTransaction();
+        try {
+            database.delete("samples", null, null);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                Sample sample = new Sample();
+                sample.long0 = i;
+                sample.double0 = i / 2d;
+                sample.string0 = "Sample " + i;
+                sample.int0 = i % 100;
+                mRepository.create(sample);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @Test
+    public void load() {
+        for (int round = 0; round < ROUNDS; round++) {
+            long perRow = loadResolvingIndicesPerRow();
+            long perCursor = loadResolvingIndicesPerCursor();
+
+            if (round == ROUNDS - 1) {
+                System.out.println(String.format("Column indices per row:    %d ms", perRow / 1000000));
+                System.out.println(String.format("Column indices per cursor: %d ms", perCursor / 1000000));
+            }
+        }
+    }
+
+    private long loadResolvingIndicesPerRow() {
+        Cursor cursor = query();
+        Sample sample = new Sample();
+
+        long start = System.nanoTime();
+        while (cursor.moveToNext()) {
+            mRepository.load(sample, cursor, mRepository.getColumnIndices(cursor));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        cursor.close();
+        return elapsed;
+    }
+
+    private long loadResolvingIndicesPerCursor() {
+        Cursor cursor = query();
+        Sample sample = new Sample();
+
+        long start = System.nanoTime();
+        int[] columnIndices = mRepository.getColumnIndices(cursor);
+        while (cursor.moveToNext()) {
+            mRepository.load(sample, cursor, columnIndices);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        cursor.close();
+        return elapsed;
+    }
+
+    private Cursor query() {
+        Cursor cursor = Ellie.getInstance().getDatabase().rawQuery("SELECT * FROM samples", null);
+        cursor.getCount();
+        return cursor;
+    }
+}
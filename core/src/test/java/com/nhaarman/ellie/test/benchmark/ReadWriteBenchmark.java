@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.test.benchmark;
+
+import com.nhaarman.ellie.Ellie;
+import com.nhaarman.ellie.query.Select;
+import com.nhaarman.ellie.test.model.Sample;
+import com.nhaarman.ellie.test.shadows.PersistentShadowSQLiteOpenHelper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of reads and writes executed at the same time, with a single connection versus
+ * write-ahead logging with a pool of read-only connections. One thread saves entities continuously while the
+ * reader threads run indexed select queries.
+ * <p/>
+ * This class is not part of the regular test run. Run it explicitly, e.g. from the IDE.
+ * Note that Robolectric's SQLite implementation differs from the one on a device, so only the relative numbers
+ * are meaningful.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = PersistentShadowSQLiteOpenHelper.class)
+public class ReadWriteBenchmark {
+
+    private static final int ROW_COUNT = 10000;
+    private static final int[] READER_COUNTS = {1, 2, 4, 8};
+    private static final int READ_CONNECTIONS = 4;
+    private static final long DURATION_MILLIS = 2000;
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void readWrite() throws InterruptedException {
+        Ellie single = createEllie("ReadWriteBenchmark.db", 0);
+        Ellie wal = createEllie("ReadWriteBenchmarkWal.db", READ_CONNECTIONS);
+
+        System.out.println(String.format("%-12s%8s%16s%16s", "mode", "readers", "reads/s", "writes/s"));
+
+        for (int readerCount : READER_COUNTS) {
+            for (int round = 0; round < ROUNDS; round++) {
+                boolean report = round == ROUNDS - 1;
+
+                run("single", single, readerCount, report);
+                run("wal", wal, readerCount, report);
+            }
+        }
+    }
+
+    private static Ellie createEllie(final String name, final int readConnections) {
+        Ellie ellie = new Ellie();
+        if (readConnections > 0) {
+            ellie.enableWriteAheadLogging(readConnections);
+        }
+        ellie.init(Robolectric.application, name, 1);
+        Ellie.useInstance(ellie);
+
+        ellie.getDatabase().delete("samples", null, null);
+        List<Sample> samples = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Sample sample = new Sample();
+            sample.int0 = i % 100;
+            sample.string0 = "Sample " + i;
+            samples.add(sample);
+        }
+        ellie.saveAll(Sample.class, samples);
+        ellie.getDatabase().execSQL("CREATE INDEX IF NOT EXISTS samples_int_0 ON samples (int_0)");
+
+        return ellie;
+    }
+
+    private static void run(final String mode, final Ellie ellie, final int readerCount, final boolean report) throws InterruptedException {
+        Ellie.useInstance(ellie);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong writes = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(readerCount + 1);
+
+        new Thread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        Random random = new Random(0);
+                        long count = 0;
+                        while (running.get()) {
+                            Sample sample = new Sample();
+                            sample.int0 = random.nextInt(100);
+                            sample.string0 = "Written " + count;
+                            sample.save();
+                            count++;
+                        }
+                        writes.addAndGet(count);
+                        done.countDown();
+                    }
+                }
+        ).start();
+
+        for (int i = 0; i < readerCount; i++) {
+            final long seed = i + 1;
+            new Thread(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            Random random = new Random(seed);
+                            long count = 0;
+                            while (running.get()) {
+                                new Select().with(ellie).from(Sample.class).where("int_0=?", random.nextInt(100)).limit("20").fetch();
+                                count++;
+                            }
+                            reads.addAndGet(count);
+                            done.countDown();
+                        }
+                    }
+            ).start();
+        }
+
+        Thread.sleep(DURATION_MILLIS);
+        running.set(false);
+        done.await();
+
+        if (report) {
+            long readsPerSecond = reads.get() * 1000 / DURATION_MILLIS;
+            long writesPerSecond = writes.get() * 1000 / DURATION_MILLIS;
+            System.out.println(String.format("%-12s%8d%16d%16d", mode, readerCount, readsPerSecond, writesPerSecond));
+        }
+    }
+}
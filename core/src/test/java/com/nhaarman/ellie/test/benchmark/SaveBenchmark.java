@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.test.benchmark;
+
+import com.nhaarman.ellie.Ellie;
+import com.nhaarman.ellie.test.model.Sample;
+import com.nhaarman.ellie.test.shadows.PersistentShadowSQLiteOpenHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares inserting 10k rows of a 20-column model by calling {@link com.nhaarman.ellie.Model#save()} for each entity,
+ * versus a single call to {@link Ellie#saveAll(Class, java.util.Collection)}.
+ * <p/>
+ * This class is not part of the regular test run. Run it explicitly, e.g. from the IDE.
+ * Note that Robolectric's SQLite implementation differs from the one on a device, so only the relative numbers
+ * are meaningful.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = PersistentShadowSQLiteOpenHelper.class)
+public class SaveBenchmark {
+
+    private static final int ROW_COUNT = 10000;
+    private static final int ROUNDS = 3;
+
+    @Before
+    public void initialize() {
+        Ellie.getInstance().init(Robolectric.application, "SaveBenchmark.db", 1);
+    }
+
+    @Test
+    public void save() {
+        for (int round = 0; round < ROUNDS; round++) {
+            long separately = saveSeparately();
+            long batched = saveBatched();
+
+            if (round == ROUNDS - 1) {
+                System.out.println(String.format("save() per entity: %d ms", separately / 1000000));
+                System.out.println(String.format("saveAll():         %d ms", batched / 1000000));
+            }
+        }
+    }
+
+    private long saveSeparately() {
+        List<Sample> samples = createSamples();
+
+        long start = System.nanoTime();
+        for (Sample sample : samples) {
+            sample.save();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long saveBatched() {
+        List<Sample> samples = createSamples();
+
+        long start = System.nanoTime();
+        Ellie.getInstance().saveAll(Sample.class, samples);
+        return System.nanoTime() - start;
+    }
+
+    private static List<Sample> createSamples() {
+        Ellie.getInstance().getDatabase().delete("samples", null, null);
+
+        List<Sample> samples = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Sample sample = new Sample();
+            sample.long0 = i;
+            sample.double0 = i / 2d;
+            sample.string0 = "Sample " + i;
+            sample.int0 = i % 100;
+            samples.add(sample);
+        }
+        return samples;
+    }
+}
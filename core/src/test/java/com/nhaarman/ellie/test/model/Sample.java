@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.test.model;
+
+import com.nhaarman.ellie.Model;
+import com.nhaarman.ellie.annotation.Column;
+import com.nhaarman.ellie.annotation.Table;
+
+/**
+ * A model with 20 columns, including the id column, used for benchmarking.
+ */
+@Table("samples")
+public class Sample extends Model {
+
+    @Column("long_0")
+    public long long0;
+    @Column("long_1")
+    public long long1;
+    @Column("long_2")
+    public long long2;
+    @Column("long_3")
+    public long long3;
+    @Column("long_4")
+    public long long4;
+    @Column("long_5")
+    public long long5;
+    @Column("double_0")
+    public double double0;
+    @Column("double_1")
+    public double double1;
+    @Column("double_2")
+    public double double2;
+    @Column("double_3")
+    public double double3;
+    @Column("double_4")
+    public double double4;
+    @Column("string_0")
+    public String string0;
+    @Column("string_1")
+    public String string1;
+    @Column("string_2")
+    public String string2;
+    @Column("string_3")
+    public String string3;
+    @Column("string_4")
+    public String string4;
+    @Column("int_0")
+    public int int0;
+    @Column("int_1")
+    public int int1;
+    @Column("int_2")
+    public int int2;
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongLruCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        LongLruCache<String> cache = new LongLruCache<>(10);
+
+        assertThat(cache.put(1, "a")).isNull();
+        assertThat(cache.put(2, "b")).isNull();
+
+        assertThat(cache.get(1)).isEqualTo("a");
+        assertThat(cache.get(2)).isEqualTo("b");
+        assertThat(cache.get(3)).isNull();
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.hitCount()).isEqualTo(2);
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.putCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPutReplacesValue() {
+        RecordingCache cache = new RecordingCache(10);
+        cache.put(1, "a");
+
+        assertThat(cache.put(1, "b")).isEqualTo("a");
+        assertThat(cache.get(1)).isEqualTo("b");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.mReplaced).containsExactly(1L);
+        assertThat(cache.mEvicted).isEmpty();
+    }
+
+    @Test
+    public void testNegativeAndLargeKeys() {
+        LongLruCache<String> cache = new LongLruCache<>(10);
+        cache.put(-1, "a");
+        cache.put(Long.MIN_VALUE, "b");
+        cache.put(Long.MAX_VALUE, "c");
+        cache.put(1L << 32, "d");
+        cache.put(0, "e");
+
+        assertThat(cache.get(-1)).isEqualTo("a");
+        assertThat(cache.get(Long.MIN_VALUE)).isEqualTo("b");
+        assertThat(cache.get(Long.MAX_VALUE)).isEqualTo("c");
+        assertThat(cache.get(1L << 32)).isEqualTo("d");
+        assertThat(cache.get(0)).isEqualTo("e");
+        assertThat(cache.get(1)).isNull();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        RecordingCache cache = new RecordingCache(3);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+
+        cache.get(1);
+        cache.put(4, "d");
+
+        assertThat(cache.mEvicted).containsExactly(2L);
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(1)).isEqualTo("a");
+
+        cache.put(3, "c2");
+        cache.put(5, "e");
+
+        assertThat(cache.mEvicted).containsExactly(2L, 4L);
+        assertThat(cache.evictionCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void testRemove() {
+        RecordingCache cache = new RecordingCache(10);
+        cache.put(1, "a");
+        cache.put(2, "b");
+
+        assertThat(cache.remove(1)).isEqualTo("a");
+        assertThat(cache.remove(1)).isNull();
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isEqualTo("b");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.mReplaced).containsExactly(1L);
+        assertThat(cache.mEvicted).isEmpty();
+    }
+
+    /**
+     * Removes keys from the start, the middle and the end of a probe chain, which the backward shift must keep intact.
+     */
+    @Test
+    public void testRemoveFromProbeChain() {
+        long[] keys = collidingKeys(5, LongLruCache.MINIMUM_CAPACITY << 1);
+
+        for (int removed = 0; removed < keys.length; removed++) {
+            LongLruCache<Long> cache = new LongLruCache<>(100);
+            for (long key : keys) {
+                cache.put(key, key);
+            }
+
+            cache.remove(keys[removed]);
+
+            for (int i = 0; i < keys.length; i++) {
+                if (i == removed) {
+                    assertThat(cache.get(keys[i])).isNull();
+                } else {
+                    assertThat(cache.get(keys[i])).isEqualTo(keys[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Entries that wrapped around the end of the hash table must be shifted back across the boundary.
+     */
+    @Test
+    public void testRemoveFromWrappedProbeChain() {
+        int tableLength = LongLruCache.MINIMUM_CAPACITY << 1;
+        long[] lastSlot = collidingKeys(3, tableLength, tableLength - 1);
+        long[] firstSlot = collidingKeys(2, tableLength, 0);
+
+        LongLruCache<Long> cache = new LongLruCache<>(100);
+        for (long key : lastSlot) {
+            cache.put(key, key);
+        }
+        for (long key : firstSlot) {
+            cache.put(key, key);
+        }
+
+        cache.remove(lastSlot[0]);
+        cache.remove(firstSlot[0]);
+
+        assertThat(cache.get(lastSlot[0])).isNull();
+        assertThat(cache.get(lastSlot[1])).isEqualTo(lastSlot[1]);
+        assertThat(cache.get(lastSlot[2])).isEqualTo(lastSlot[2]);
+        assertThat(cache.get(firstSlot[0])).isNull();
+        assertThat(cache.get(firstSlot[1])).isEqualTo(firstSlot[1]);
+    }
+
+    @Test
+    public void testRemovedEntriesAreReused() {
+        LongLruCache<Long> cache = new LongLruCache<>(100);
+        for (long key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+        for (long key = 0; key < 10; key += 2) {
+            cache.remove(key);
+        }
+        for (long key = 100; key < 105; key++) {
+            cache.put(key, key);
+        }
+
+        for (long key = 0; key < 10; key++) {
+            assertThat(cache.get(key)).isEqualTo(key % 2 == 0 ? null : key);
+        }
+        for (long key = 100; key < 105; key++) {
+            assertThat(cache.get(key)).isEqualTo(key);
+        }
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+    @Test
+    public void testGrowsPastMinimumCapacity() {
+        int count = LongLruCache.MINIMUM_CAPACITY * 64;
+        RecordingCache cache = new RecordingCache(count);
+        for (long key = 0; key < count; key++) {
+            cache.put(key * 31, String.valueOf(key));
+        }
+
+        assertThat(cache.size()).isEqualTo(count);
+        assertThat(cache.mEvicted).isEmpty();
+        for (long key = 0; key < count; key++) {
+            assertThat(cache.get(key * 31)).isEqualTo(String.valueOf(key));
+        }
+    }
+
+    /**
+     * The access order must survive a rehash.
+     */
+    @Test
+    public void testEvictionOrderAfterGrowth() {
+        int count = LongLruCache.MINIMUM_CAPACITY * 4;
+        RecordingCache cache = new RecordingCache(count);
+        for (long key = 0; key < count; key++) {
+            cache.put(key, String.valueOf(key));
+        }
+        cache.get(0);
+
+        cache.put(count, "new");
+        cache.put(count + 1, "new");
+
+        assertThat(cache.mEvicted).containsExactly(1L, 2L);
+        assertThat(cache.get(0)).isEqualTo("0");
+    }
+
+    @Test
+    public void testTrimToSize() {
+        RecordingCache cache = new RecordingCache(10);
+        for (long key = 0; key < 5; key++) {
+            cache.put(key, "value");
+        }
+
+        cache.trimToSize(2);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.mEvicted).containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    public void testTrimToMinusOneEvictsZeroSizedEntries() {
+        LongLruCache<String> cache = new LongLruCache<String>(10) {
+            @Override
+            protected int sizeOf(final long key, final String value) {
+                return value.length();
+            }
+        };
+        cache.put(3, "abc");
+        cache.put(1, "");
+        cache.put(2, "");
+
+        cache.trimToSize(0);
+        assertThat(cache.get(1)).isEqualTo("");
+        assertThat(cache.get(2)).isEqualTo("");
+        assertThat(cache.get(3)).isNull();
+
+        cache.trimToSize(-1);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testEvictAll() {
+        RecordingCache cache = new RecordingCache(10);
+        cache.put(1, "a");
+        cache.put(2, "b");
+
+        cache.evictAll();
+
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.mEvicted).containsExactly(1L, 2L);
+
+        cache.put(3, "c");
+        assertThat(cache.get(3)).isEqualTo("c");
+    }
+
+    @Test
+    public void testSizeOf() {
+        LongLruCache<String> cache = new LongLruCache<String>(10) {
+            @Override
+            protected int sizeOf(final long key, final String value) {
+                return value.length();
+            }
+        };
+        cache.put(1, "abcd");
+        cache.put(2, "abcd");
+        assertThat(cache.size()).isEqualTo(8);
+
+        cache.put(1, "ab");
+        assertThat(cache.size()).isEqualTo(6);
+
+        cache.put(3, "abcdef");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.size()).isEqualTo(8);
+    }
+
+    @Test
+    public void testResize() {
+        RecordingCache cache = new RecordingCache(5);
+        for (long key = 0; key < 5; key++) {
+            cache.put(key, "value");
+        }
+
+        cache.resize(3);
+
+        assertThat(cache.maxSize()).isEqualTo(3);
+        assertThat(cache.mEvicted).containsExactly(0L, 1L);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullValue() {
+        new LongLruCache<String>(10).put(1, null);
+    }
+
+    /**
+     * Returns given number of keys that hash to given slot of a hash table of given length.
+     */
+    private static long[] collidingKeys(final int count, final int tableLength, final int slot) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 0; found < count; key++) {
+            if ((LongLruCache.hash(key) & tableLength - 1) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    private static long[] collidingKeys(final int count, final int tableLength) {
+        return collidingKeys(count, tableLength, LongLruCache.hash(0) & tableLength - 1);
+    }
+
+    private static class RecordingCache extends LongLruCache<String> {
+
+        final List<Long> mEvicted = new ArrayList<>();
+        final List<Long> mReplaced = new ArrayList<>();
+
+        RecordingCache(final int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected void entryRemoved(final boolean evicted, final long key, final String oldValue, final String newValue) {
+            if (evicted) {
+                mEvicted.add(key);
+            } else {
+                mReplaced.add(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void testSizeIsSharedByCaches() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        LongLruCache<String> first = new SizedCache(budget);
+        LongLruCache<String> second = new SizedCache(budget);
+
+        first.put(1, "abc");
+        second.put(1, "abcde");
+        assertThat(budget.size()).isEqualTo(8);
+
+        first.remove(1);
+        assertThat(budget.size()).isEqualTo(5);
+
+        second.put(1, "a");
+        assertThat(budget.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLargestCacheIsTrimmedFirst() {
+        MemoryBudget budget = new MemoryBudget(100);
+        LongLruCache<String> large = new SizedCache(budget);
+        LongLruCache<String> small = new SizedCache(budget);
+
+        for (long key = 0; key < 8; key++) {
+            large.put(key, "0123456789");
+        }
+        for (long key = 0; key < 20; key++) {
+            small.put(key, "0");
+        }
+        assertThat(budget.size()).isEqualTo(100);
+
+        small.put(100, "0123456789");
+
+        assertThat(budget.size()).isLessThanOrEqualTo(100);
+        assertThat(large.size()).isEqualTo(70);
+        assertThat(large.get(0)).isNull();
+        assertThat(large.get(1)).isNotNull();
+        assertThat(small.size()).isEqualTo(30);
+    }
+
+    @Test
+    public void testTrimsUntilWithinBudget() {
+        MemoryBudget budget = new MemoryBudget(10);
+        LongLruCache<String> first = new SizedCache(budget);
+        LongLruCache<String> second = new SizedCache(budget);
+
+        first.put(1, "012345");
+        second.put(1, "0123");
+        second.put(2, "0123456789");
+
+        /* The second cache is the largest, and evicts until its size is 14 - 10 = 4. */
+        assertThat(budget.size()).isLessThanOrEqualTo(10);
+        assertThat(second.size()).isEqualTo(0);
+        assertThat(first.get(1)).isNotNull();
+        assertThat(first.size() + second.size()).isEqualTo((int) budget.size());
+    }
+
+    @Test
+    public void testStripedCacheSharesBudget() {
+        MemoryBudget budget = new MemoryBudget(50);
+        StripedLongLruCache<String> striped = new StripedLongLruCache<String>(50, 4, budget) {
+            @Override
+            protected int sizeOf(final long key, final String value) {
+                return value.length();
+            }
+        };
+        LongLruCache<String> other = new SizedCache(budget);
+
+        for (long key = 0; key < 10; key++) {
+            striped.put(key, "01");
+        }
+        other.put(1, "0123456789012345678901234567890123456789");
+
+        assertThat(budget.size()).isLessThanOrEqualTo(50);
+        assertThat(striped.size() + other.size()).isEqualTo((int) budget.size());
+    }
+
+    @Test
+    public void testUnregister() {
+        MemoryBudget budget = new MemoryBudget(10);
+        LongLruCache<String> first = new SizedCache(budget);
+        LongLruCache<String> second = new SizedCache(budget);
+        first.put(1, "01234");
+        second.put(1, "01234");
+
+        budget.unregister(first);
+        assertThat(budget.size()).isEqualTo(5);
+        assertThat(first.get(1)).isEqualTo("01234");
+
+        /* The unregistered cache no longer counts towards the budget, nor is it trimmed by it. */
+        first.put(2, "01234");
+        second.put(2, "01234");
+        assertThat(budget.size()).isEqualTo(10);
+        assertThat(first.size()).isEqualTo(10);
+        assertThat(second.size()).isEqualTo(10);
+
+        budget.unregister(first);
+        assertThat(budget.size()).isEqualTo(10);
+    }
+
+    @Test
+    public void testUnregisterWrappedStripedCache() {
+        MemoryBudget budget = new MemoryBudget(100);
+        StripedLongLruCache<String> striped = new StripedLongLruCache<String>(100, 4, budget) {
+            @Override
+            protected int sizeOf(final long key, final String value) {
+                return value.length();
+            }
+        };
+        ReferenceLongCache<String> cache = new ReferenceLongCache<>(striped, false, 4);
+        for (long key = 0; key < 10; key++) {
+            cache.put(key, "01");
+        }
+        assertThat(budget.size()).isEqualTo(20);
+
+        budget.unregister(cache);
+
+        assertThat(budget.size()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(20);
+    }
+
+    private static class SizedCache extends LongLruCache<String> {
+
+        SizedCache(final MemoryBudget budget) {
+            super(Integer.MAX_VALUE, budget);
+        }
+
+        @Override
+        protected int sizeOf(final long key, final String value) {
+            return value.length();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReferenceLongCacheTest {
+
+    @Test
+    public void testHitInBackingCache() {
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(new LongLruCache<>(10), false);
+        Object value = new Object();
+        cache.put(1, value);
+
+        assertThat(cache.get(1)).isSameAs(value);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.referenceHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testWeakHitAfterEviction() {
+        LongLruCache<Object> backingCache = new LongLruCache<>(1);
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(backingCache, false);
+
+        Object first = new Object();
+        cache.put(1, first);
+        cache.put(2, new Object());
+        assertThat(backingCache.get(1)).isNull();
+
+        assertThat(cache.get(1)).isSameAs(first);
+        assertThat(cache.referenceHitCount()).isEqualTo(1);
+
+        /* The value is moved back into the backing cache. */
+        assertThat(backingCache.get(1)).isSameAs(first);
+    }
+
+    @Test
+    public void testSoftHitAfterEviction() {
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(new LongLruCache<>(1), true);
+
+        Object first = new Object();
+        cache.put(1, first);
+        cache.put(2, new Object());
+
+        assertThat(cache.get(1)).isSameAs(first);
+    }
+
+    @Test
+    public void testClearedReferencesArePurged() throws InterruptedException {
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(new LongLruCache<>(1), false);
+        cache.put(1, new Object());
+        cache.put(2, new Object());
+        assertThat(cache.referenceCount()).isEqualTo(2);
+
+        /* Entry 1 is only weakly reachable now. */
+        for (int i = 0; i < 50 && cache.referenceCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+            cache.get(3);
+        }
+
+        assertThat(cache.referenceCount()).isEqualTo(1);
+        assertThat(cache.get(1)).isNull();
+    }
+
+    @Test
+    public void testRemoveRemovesBothTiers() {
+        LongLruCache<Object> backingCache = new LongLruCache<>(1);
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(backingCache, false);
+
+        Object first = new Object();
+        cache.put(1, first);
+        cache.put(2, new Object());
+
+        assertThat(cache.remove(1)).isSameAs(first);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.referenceCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEvictAll() {
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(new LongLruCache<>(10), false, 4);
+        Object value = new Object();
+        cache.put(1, value);
+        cache.put(2, value);
+
+        cache.evictAll();
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.referenceCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testStripedOverStripedCache() {
+        ReferenceLongCache<Object> cache = new ReferenceLongCache<>(new StripedLongLruCache<>(16, 4), false, 4);
+        assertThat(cache.stripeCount()).isEqualTo(4);
+
+        Object[] values = new Object[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new Object();
+            cache.put(i, values[i]);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            assertThat(cache.get(i)).isSameAs(values[i]);
+        }
+        assertThat(cache.referenceCount()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 Niek Haarman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nhaarman.ellie.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedLongLruCacheTest {
+
+    @Test
+    public void testSegmentCount() {
+        assertThat(new StripedLongLruCache<String>(100, 1).segmentCount()).isEqualTo(1);
+        assertThat(new StripedLongLruCache<String>(100, 3).segmentCount()).isEqualTo(4);
+        assertThat(new StripedLongLruCache<String>(100, 16).segmentCount()).isEqualTo(16);
+
+        /* Every segment must be able to hold at least one entry. */
+        assertThat(new StripedLongLruCache<String>(2, 16).segmentCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testMaxSizeIsSplitOverSegments() {
+        StripedLongLruCache<String> cache = new StripedLongLruCache<>(103, 4);
+
+        assertThat(cache.maxSize()).isEqualTo(103);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        StripedLongLruCache<String> cache = new StripedLongLruCache<>(100, 4);
+        for (long key = 0; key < 50; key++) {
+            assertThat(cache.put(key, String.valueOf(key))).isNull();
+        }
+
+        for (long key = 0; key < 50; key++) {
+            assertThat(cache.get(key)).isEqualTo(String.valueOf(key));
+        }
+        assertThat(cache.remove(10)).isEqualTo("10");
+        assertThat(cache.get(10)).isNull();
+        assertThat(cache.size()).isEqualTo(49);
+        assertThat(cache.hitCount()).isEqualTo(50);
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.putCount()).isEqualTo(50);
+    }
+
+    /**
+     * Sequential ids must spread evenly enough over the segments that none of them evicts early.
+     */
+    @Test
+    public void testSequentialKeysAreDistributed() {
+        int segments = 8;
+        int maxSize = 8000;
+        StripedLongLruCache<String> cache = new StripedLongLruCache<>(maxSize, segments);
+
+        int count = maxSize * 3 / 4;
+        for (long key = 1; key <= count; key++) {
+            cache.put(key, String.valueOf(key));
+        }
+
+        assertThat(cache.evictionCount()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(count);
+    }
+
+    @Test
+    public void testEvictsPerSegment() {
+        StripedLongLruCache<String> cache = new StripedLongLruCache<>(64, 4);
+        for (long key = 0; key < 1000; key++) {
+            cache.put(key, String.valueOf(key));
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+        assertThat(cache.evictionCount()).isEqualTo(1000 - cache.size());
+        assertThat(cache.get(999)).isEqualTo("999");
+    }
+
+    @Test
+    public void testSizeOf() {
+        StripedLongLruCache<String> cache = new StripedLongLruCache<String>(1000, 4) {
+            @Override
+            protected int sizeOf(final long key, final String value) {
+                return value.length();
+            }
+        };
+        cache.put(1, "abc");
+        cache.put(2, "abcde");
+
+        assertThat(cache.size()).isEqualTo(8);
+    }
+
+    @Test
+    public void testEvictAll() {
+        StripedLongLruCache<String> cache = new StripedLongLruCache<>(100, 4);
+        for (long key = 0; key < 50; key++) {
+            cache.put(key, String.valueOf(key));
+        }
+
+        cache.evictAll();
+
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.get(0)).isNull();
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final StripedLongLruCache<Long> cache = new StripedLongLruCache<>(10000, 4);
+        final CountDownLatch done = new CountDownLatch(4);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final long offset = i * 1000L;
+            threads.add(
+                    new Thread(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        for (long key = offset; key < offset + 1000; key++) {
+                                            cache.put(key, key);
+                                            if (!Long.valueOf(key).equals(cache.get(key))) {
+                                                throw new AssertionError("Missing " + key);
+                                            }
+                                        }
+                                    } catch (Throwable e) {
+                                        failure.set(e);
+                                    } finally {
+                                        done.countDown();
+                                    }
+                                }
+                            }
+                    )
+            );
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        done.await();
+
+        assertThat(failure.get()).isNull();
+        assertThat(cache.size()).isEqualTo(4000);
+    }
+}